@@ -0,0 +1,194 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer.build;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Generates the selector specific encode/decode kernels of Simple8 and Simple8RLE. Run by the build in the
+ * generate-sources phase, the output is added as a source root and must not be edited by hand.
+ *
+ * Usage: KernelGenerator &lt;output directory&gt; [unroll] [mask]
+ *
+ * Unroll strategies:
+ * <ul>
+ *     <li>full - one statement per value (default)</li>
+ *     <li>loop - a loop over the values of the word, leaving unrolling to the JIT</li>
+ * </ul>
+ *
+ * Mask strategies:
+ * <ul>
+ *     <li>decode - values are shifted in without a mask and masked after shifting out (default). The encoder
+ *     checks the bit widths before selecting a kernel, so encode masks are not needed.</li>
+ *     <li>both - values are also masked when encoding</li>
+ *     <li>shifts - decoding isolates values with a left and a right shift instead of a mask</li>
+ * </ul>
+ *
+ * @author Michael Burman
+ */
+public class KernelGenerator {
+
+    private static final String PACKAGE = "fi.iki.yak.compression.integer";
+
+    private static final int[] SIMPLE8_BITS = {0, 0, 1, 2, 3, 4, 5, 6, 7, 8, 10, 12, 15, 20, 30, 60};
+    private static final int[] SIMPLE8_COUNTS = {240, 120, 60, 30, 20, 15, 12, 10, 8, 7, 6, 5, 4, 3, 2, 1};
+
+    // Selector 0 is the end-of-stream marker and selector 15 a run in Simple8RLE, those are not kernels
+    private static final int[] RLE_BITS = {0, 1, 2, 3, 4, 5, 6, 7, 8, 10, 12, 15, 20, 30, 60};
+    private static final int[] RLE_COUNTS = {0, 60, 30, 20, 15, 12, 10, 8, 7, 6, 5, 4, 3, 2, 1};
+
+    private final String unroll;
+    private final String mask;
+
+    KernelGenerator(String unroll, String mask) {
+        if(!"full".equals(unroll) && !"loop".equals(unroll)) {
+            throw new IllegalArgumentException("Unknown unroll strategy " + unroll);
+        }
+        if(!"decode".equals(mask) && !"both".equals(mask) && !"shifts".equals(mask)) {
+            throw new IllegalArgumentException("Unknown mask strategy " + mask);
+        }
+        this.unroll = unroll;
+        this.mask = mask;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1) {
+            throw new IllegalArgumentException("Usage: KernelGenerator <output directory> [unroll] [mask]");
+        }
+        KernelGenerator generator = new KernelGenerator(args.length > 1 ? args[1] : "full",
+                args.length > 2 ? args[2] : "decode");
+        Path directory = Paths.get(args[0], PACKAGE.split("\\."));
+        Files.createDirectories(directory);
+        generator.write(directory.resolve("Simple8Kernels.java"),
+                generator.generate("Simple8Kernels", "Simple8", SIMPLE8_BITS, SIMPLE8_COUNTS, 0));
+        generator.write(directory.resolve("Simple8RLEKernels.java"),
+                generator.generate("Simple8RLEKernels", "Simple8RLE", RLE_BITS, RLE_COUNTS, 1));
+    }
+
+    private void write(Path file, String source) throws IOException {
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+        // Keep the timestamp of unchanged files to avoid needless recompilation
+        if(Files.exists(file) && java.util.Arrays.equals(Files.readAllBytes(file), bytes)) {
+            return;
+        }
+        Files.write(file, bytes);
+    }
+
+    String generate(String className, String codecName, int[] bits, int[] counts, int firstSelector) {
+        StringWriter source = new StringWriter();
+        PrintWriter out = new PrintWriter(source);
+        out.println("package " + PACKAGE + ";");
+        out.println();
+        out.println("import java.util.Arrays;");
+        out.println();
+        out.println("/**");
+        out.println(" * Selector kernels of {@link " + codecName + "}, generated by KernelGenerator with unroll=" + unroll
+                + " and mask=" + mask + ". Do not edit.");
+        out.println(" */");
+        out.println("final class " + className + " {");
+        out.println();
+        out.println("    private " + className + "() {");
+        out.println("    }");
+        for(int selector = firstSelector; selector < bits.length; selector++) {
+            out.println();
+            encode(out, selector, bits[selector], counts[selector]);
+        }
+        for(int selector = firstSelector; selector < bits.length; selector++) {
+            out.println();
+            decode(out, selector, bits[selector], counts[selector]);
+        }
+        out.println("}");
+        out.flush();
+        return source.toString();
+    }
+
+    private void encode(PrintWriter out, int selector, int bits, int count) {
+        out.println("    static void encode" + selector
+                + "(final long[] input, int startPos, final long[] output, int outputPos) {");
+        if(bits == 0) {
+            // The payload of the zero selectors is empty
+            out.println(selector == 0 ? "        output[outputPos] = 0;" : "        output[outputPos] |= "
+                    + selector + "L << 60;");
+        } else if("loop".equals(unroll)) {
+            out.println("        long word = " + selector + "L << 60;");
+            out.println("        for(int i = 0; i < " + count + "; i++) {");
+            out.println("            word |= " + maskedInput("input[startPos + i]", bits) + " << (("
+                    + (count - 1) + " - i) * " + bits + ");");
+            out.println("        }");
+            out.println("        output[outputPos] |= word;");
+        } else {
+            out.println("        output[outputPos] |= " + selector + "L << 60;");
+            for(int i = 0; i < count; i++) {
+                int shift = (count - 1 - i) * bits;
+                out.println("        output[outputPos] |= " + maskedInput(index("input[startPos", i), bits)
+                        + (shift > 0 ? " << " + shift : "") + ";");
+            }
+        }
+        out.println("    }");
+    }
+
+    private void decode(PrintWriter out, int selector, int bits, int count) {
+        out.println("    static void decode" + selector
+                + "(final long[] input, int startPos, final long[] output, int outputPos) {");
+        if(bits == 0) {
+            out.println("        Arrays.fill(output, outputPos, outputPos + " + count + ", 0);");
+        } else if("loop".equals(unroll)) {
+            out.println("        long word = input[startPos];");
+            out.println("        for(int i = 0; i < " + count + "; i++) {");
+            out.println("            output[outputPos + i] = " + extract("word", "((" + (count - 1) + " - i) * "
+                    + bits + ")", bits, true) + ";");
+            out.println("        }");
+        } else {
+            for(int i = 0; i < count; i++) {
+                int shift = (count - 1 - i) * bits;
+                out.println("        " + index("output[outputPos", i) + " = "
+                        + extract("input[startPos]", Integer.toString(shift), bits, shift > 0) + ";");
+            }
+        }
+        out.println("    }");
+    }
+
+    private String maskedInput(String value, int bits) {
+        return "both".equals(mask) ? "(" + value + " & " + mask(bits) + ")" : "(" + value + ")";
+    }
+
+    /**
+     * @param shifted false if the value is already in the lowest bits
+     */
+    private String extract(String word, String shift, int bits, boolean shifted) {
+        if("shifts".equals(mask)) {
+            String left = shifted ? "(" + word + " << (" + (64 - bits) + " - " + shift + "))" : "(" + word
+                    + " << " + (64 - bits) + ")";
+            return left + " >>> " + (64 - bits);
+        }
+        return (shifted ? "(" + word + " >>> " + shift + ")" : word) + " & " + mask(bits);
+    }
+
+    private static String index(String array, int i) {
+        return array + (i > 0 ? " + " + i : "") + "]";
+    }
+
+    private static String mask(int bits) {
+        long mask = (1L << bits) - 1;
+        return mask > Integer.MAX_VALUE ? mask + "L" : Long.toString(mask);
+    }
+}
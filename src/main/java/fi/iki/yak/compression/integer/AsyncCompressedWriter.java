@@ -0,0 +1,272 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes compressed blocks to a file while the caller keeps compressing the next ones.
+ *
+ * The calling thread compresses full blocks into one of a fixed amount of buffers (two by default, double buffering)
+ * and hands it to an {@link AsynchronousFileChannel}. While the write is in flight the caller fills the next buffer.
+ * If every buffer is waiting for I/O, the caller blocks until one is written, which bounds the memory use and slows
+ * down the producer when the disk falls behind.
+ *
+ * The file uses the same layout as {@link Simple8OutputStream} and can be read with {@link Simple8InputStream}.
+ * Not thread-safe, a single thread is expected to produce the values.
+ *
+ * @author Michael Burman
+ */
+public class AsyncCompressedWriter implements Closeable {
+
+    public static final int DEFAULT_BUFFERS = 2;
+
+    private final AsynchronousFileChannel channel;
+    private final Codec codec;
+    private final long[] block;
+    private final int buffers;
+    private final BlockingQueue<ByteBuffer> free;
+    private final Semaphore inFlight;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private int blockValues = 0;
+    private long position = 0;
+    private boolean headerWritten = false;
+    private boolean closed = false;
+
+    public AsyncCompressedWriter(Path path, Codec codec) throws IOException {
+        this(AsynchronousFileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING), codec, Simple8OutputStream.DEFAULT_BLOCK_SIZE, DEFAULT_BUFFERS);
+    }
+
+    /**
+     * @param channel   Channel to write to, starting from position 0. The channel is closed with the writer.
+     * @param codec     Compression method
+     * @param blockSize Amount of values in each block
+     * @param buffers   Amount of block buffers, at least two
+     */
+    public AsyncCompressedWriter(AsynchronousFileChannel channel, Codec codec, int blockSize, int buffers) {
+        if(blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive, was " + blockSize);
+        }
+        if(buffers < 2) {
+            throw new IllegalArgumentException("At least two buffers are required, was " + buffers);
+        }
+        this.channel = channel;
+        this.codec = codec;
+        this.block = new long[blockSize];
+        this.buffers = buffers;
+        this.free = new ArrayBlockingQueue<>(buffers);
+        this.inFlight = new Semaphore(buffers);
+        for(int i = 0; i < buffers; i++) {
+            free.add(ByteBuffer.allocateDirect(BlockFraming.HEADER_BYTES + BlockFraming.maxFrameBytes(blockSize)));
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException If the value does not fit in 60 bits, nothing is written then
+     */
+    public void writeLong(long value) throws IOException {
+        ensureOpen();
+        checkValue(value);
+        block[blockValues++] = value;
+        if(blockValues == block.length) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException If any of the values does not fit in 60 bits, none of them is written then
+     */
+    public void write(long[] values, int pos, int amount) throws IOException {
+        ensureOpen();
+        for(int i = pos; i < pos + amount; i++) {
+            checkValue(values[i]);
+        }
+        while(amount > 0) {
+            int copied = Math.min(amount, block.length - blockValues);
+            System.arraycopy(values, pos, block, blockValues, copied);
+            blockValues += copied;
+            pos += copied;
+            amount -= copied;
+            if(blockValues == block.length) {
+                writeBlock();
+            }
+        }
+    }
+
+    /**
+     * Write the buffered values as a (possibly partial) block and wait for every pending write to complete
+     */
+    public void flush() throws IOException {
+        ensureOpen();
+        if(blockValues > 0 || !headerWritten) {
+            writeBlock();
+        }
+        awaitWrites();
+    }
+
+    /**
+     * @return Amount of bytes handed to the channel so far
+     */
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            try {
+                awaitWrites();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        // Compress before taking a buffer, so that a failure does not hold on to one
+        Simple8Context context = Simple8Context.internal();
+        int words = blockValues > 0 ? context.compress(codec, block, 0, blockValues) : 0;
+
+        ByteBuffer buffer = takeBuffer();
+        int frameBytes;
+        boolean started = false;
+        try {
+            buffer.clear();
+            if(!headerWritten) {
+                BlockFraming.writeHeader(buffer, BlockFraming.STREAM_MAGIC, codec, block.length);
+            }
+            if(blockValues > 0) {
+                BlockFraming.writeFrame(buffer, blockValues, context.compressed(), words);
+            }
+            buffer.flip();
+            frameBytes = buffer.remaining();
+            channel.write(buffer, position, position, new WriteHandler(buffer));
+            started = true;
+        } catch(RuntimeException e) {
+            throw new IOException("Could not start an asynchronous write", e);
+        } finally {
+            if(!started) {
+                free.add(buffer);
+                inFlight.release();
+            }
+        }
+        headerWritten = true;
+        blockValues = 0;
+        position += frameBytes;
+    }
+
+    private static void checkValue(long value) {
+        if(Simple8.bits(value) > 60) {
+            throw new IllegalArgumentException("Value " + value + " does not fit in 60 bits");
+        }
+    }
+
+    private ByteBuffer takeBuffer() throws IOException {
+        try {
+            inFlight.acquire();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a free buffer");
+        }
+        ByteBuffer buffer = free.poll();
+        if(failure.get() != null || buffer == null) {
+            if(buffer != null) {
+                free.add(buffer);
+            }
+            inFlight.release();
+            rethrowFailure();
+            throw new IllegalStateException("No free buffer available");
+        }
+        return buffer;
+    }
+
+    private void awaitWrites() throws IOException {
+        try {
+            inFlight.acquire(buffers);
+            inFlight.release(buffers);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for pending writes");
+        }
+        rethrowFailure();
+    }
+
+    private void rethrowFailure() throws IOException {
+        Throwable t = failure.get();
+        if(t != null) {
+            if(t instanceof IOException) {
+                throw new IOException("Asynchronous write failed", t);
+            }
+            throw new IOException(t);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if(closed) {
+            throw new IOException("Writer has been closed");
+        }
+    }
+
+    private class WriteHandler implements CompletionHandler<Integer, Long> {
+        private final ByteBuffer buffer;
+
+        private WriteHandler(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void completed(Integer written, Long writePosition) {
+            if(buffer.hasRemaining()) {
+                // Partial write, continue from where the channel stopped
+                long next = writePosition + written;
+                try {
+                    channel.write(buffer, next, next, this);
+                } catch(RuntimeException e) {
+                    failed(e, next);
+                }
+                return;
+            }
+            free.add(buffer);
+            inFlight.release();
+        }
+
+        @Override
+        public void failed(Throwable t, Long writePosition) {
+            failure.compareAndSet(null, t);
+            free.add(buffer);
+            inFlight.release();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Byte layout shared by the stream and file formats.
+ *
+ * Stream header: int magic, short version, short codec id, int block size
+ * Block frame:   int value count, int word count, word count * long compressed words
+ * Index entry:   long frame offset, int value count, int word count, long min, long max
+ * File trailer:  long index offset, int block count, int magic
+ *
+ * All numbers are big-endian.
+ *
+ * @author Michael Burman
+ */
+final class BlockFraming {
+
+    static final int STREAM_MAGIC = 0x53385331; // "S8S1"
+    static final int FILE_MAGIC = 0x53384631; // "S8F1"
+    static final short VERSION = 1;
+
+    static final int HEADER_BYTES = 12;
+    static final int FRAME_HEADER_BYTES = 8;
+    static final int INDEX_ENTRY_BYTES = 32;
+    static final int TRAILER_BYTES = 16;
+
+    private BlockFraming() {
+    }
+
+    static final class Header {
+        final Codec codec;
+        final int blockSize;
+
+        Header(Codec codec, int blockSize) {
+            this.codec = codec;
+            this.blockSize = blockSize;
+        }
+    }
+
+    static int maxFrameBytes(int blockSize) {
+        return FRAME_HEADER_BYTES + blockSize * Long.BYTES;
+    }
+
+    static void writeHeader(ByteBuffer buffer, int magic, Codec codec, int blockSize) {
+        buffer.putInt(magic);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) codec.id());
+        buffer.putInt(blockSize);
+    }
+
+    /**
+     * Append a block frame to the buffer
+     */
+    static void writeFrame(ByteBuffer buffer, int valueCount, long[] words, int wordCount) {
+        buffer.putInt(valueCount);
+        buffer.putInt(wordCount);
+        buffer.asLongBuffer().put(words, 0, wordCount);
+        buffer.position(buffer.position() + wordCount * Long.BYTES);
+    }
+
+    /**
+     * Read and validate a stream header
+     */
+    static Header readHeader(ByteBuffer buffer, int magic) throws IOException {
+        if(buffer.getInt() != magic) {
+            throw new IOException("Invalid magic number, not a compressed stream");
+        }
+        short version = buffer.getShort();
+        if(version != VERSION) {
+            throw new IOException("Unsupported format version " + version);
+        }
+        short codecId = buffer.getShort();
+        int blockSize = buffer.getInt();
+        if(blockSize <= 0) {
+            throw new IOException("Invalid block size " + blockSize);
+        }
+        try {
+            return new Header(Codec.forId(codecId), blockSize);
+        } catch(IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    static void validateFrame(int valueCount, int wordCount, int blockSize) throws IOException {
+        if(valueCount < 0 || valueCount > blockSize || wordCount < 0 || wordCount > valueCount) {
+            throw new IOException("Corrupted block frame, " + valueCount + " values in " + wordCount + " words");
+        }
+    }
+
+    /**
+     * Read the compressed words of a frame
+     */
+    static void readWords(ByteBuffer buffer, long[] words, int wordCount) {
+        LongBuffer view = buffer.asLongBuffer();
+        view.get(words, 0, wordCount);
+        buffer.position(buffer.position() + wordCount * Long.BYTES);
+    }
+}
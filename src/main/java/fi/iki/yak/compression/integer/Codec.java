@@ -0,0 +1,174 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+/**
+ * Word based codecs of this library, for code that needs to select the compression method at runtime
+ *
+ * @author Michael Burman
+ */
+public enum Codec {
+
+    SIMPLE8(1) {
+        @Override
+        public int compress(long[] input, int inputPos, int amount, long[] output, int outputPos) {
+            return Simple8.compress(input, inputPos, amount, output, outputPos);
+        }
+
+        @Override
+        public void decompress(long[] input, int inputPos, int amount, long[] output, int outputPos) {
+            Simple8.decompress(input, inputPos, amount, output, outputPos);
+        }
+
+        @Override
+        void decompressWords(long[] input, int inputPos, int amount, long[] output, int outputPos) {
+            Simple8.decompressWords(input, inputPos, amount, output, outputPos);
+        }
+
+        @Override
+        public int valueCount(long word) {
+            return Simple8.valueCount(word);
+        }
+
+        @Override
+        public long valueAt(long word, int index) {
+            return Simple8.valueAt(word, index);
+        }
+    },
+
+    SIMPLE8_RLE(2) {
+        @Override
+        public int compress(long[] input, int inputPos, int amount, long[] output, int outputPos) {
+            return Simple8RLE.compress(input, inputPos, amount, output, outputPos);
+        }
+
+        @Override
+        public void decompress(long[] input, int inputPos, int amount, long[] output, int outputPos) {
+            Simple8RLE.decompress(input, inputPos, amount, output, outputPos);
+        }
+
+        @Override
+        void decompressWords(long[] input, int inputPos, int amount, long[] output, int outputPos) {
+            Simple8RLE.decompressWords(input, inputPos, amount, output, outputPos);
+        }
+
+        @Override
+        public int valueCount(long word) {
+            return Simple8RLE.valueCount(word);
+        }
+
+        @Override
+        public long valueAt(long word, int index) {
+            return Simple8RLE.valueAt(word, index);
+        }
+
+        @Override
+        public boolean isEndOfStream(long word) {
+            return (word >>> 60) == 0;
+        }
+    };
+
+    private final int id;
+
+    Codec(int id) {
+        this.id = id;
+    }
+
+    /**
+     * @return Stable identifier of the codec, suitable for storing with the compressed data
+     */
+    public int id() {
+        return id;
+    }
+
+    public static Codec forId(int id) {
+        for(Codec codec : values()) {
+            if(codec.id == id) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException("Unknown codec id " + id);
+    }
+
+    /**
+     * Compress the given array to a destination array. The destination range must be zeroed.
+     *
+     * @param input     Values to be compressed
+     * @param inputPos  Starting position of the input to compress
+     * @param amount    How many values to compress from input
+     * @param output    Output array to store the values
+     * @param outputPos Starting position of the output where to store the data
+     * @return Amount of words written
+     */
+    public abstract int compress(long[] input, int inputPos, int amount, long[] output, int outputPos);
+
+    /**
+     * Decompress the given words to a destination array
+     *
+     * @param input     Compressed words
+     * @param inputPos  Starting position of the words
+     * @param amount    How many words to decompress
+     * @param output    Output array to store the values
+     * @param outputPos Starting position of the output where to store the values
+     */
+    public abstract void decompress(long[] input, int inputPos, int amount, long[] output, int outputPos);
+
+    /**
+     * Same as {@link #decompress(long[], int, int, long[], int)} without recording an event. Used by the library's
+     * own partial decodes, so that only the public entry points are recorded.
+     */
+    abstract void decompressWords(long[] input, int inputPos, int amount, long[] output, int outputPos);
+
+    /**
+     * @param word Compressed word
+     * @return Amount of values the word decodes to
+     */
+    public abstract int valueCount(long word);
+
+    /**
+     * @param word  Compressed word
+     * @param index Index of the value inside the word
+     * @return Decoded value
+     */
+    public abstract long valueAt(long word, int index);
+
+    /**
+     * @param word Compressed word
+     * @return true if the word marks the end of the stream and decoding stops before it
+     */
+    public boolean isEndOfStream(long word) {
+        return false;
+    }
+
+    /**
+     * Count the values stored in a range of compressed words
+     *
+     * @param input    Compressed words
+     * @param inputPos Starting position of the words
+     * @param amount   How many words to inspect
+     * @return Amount of values the words decode to
+     */
+    public long countValues(long[] input, int inputPos, int amount) {
+        long count = 0;
+        for(int endPos = inputPos + amount; inputPos < endPos; inputPos++) {
+            if(isEndOfStream(input[inputPos])) {
+                break;
+            }
+            count += valueCount(input[inputPos]);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+/**
+ * Hooks for reporting codec calls to a profiler. This Java 8 version does nothing and is removed by the JIT, the
+ * Java 11 version in the multi-release part of the jar emits Java Flight Recorder events.
+ *
+ * @author Michael Burman
+ */
+final class CodecEvents {
+
+    private CodecEvents() {
+    }
+
+    /**
+     * @return Event to pass to {@link #endCompress(Object, Codec, int, int)}, or null if not recording
+     */
+    static Object beginCompress() {
+        return null;
+    }
+
+    static void endCompress(Object event, Codec codec, int values, int words) {
+    }
+
+    /**
+     * @return Event to pass to {@link #endDecompress(Object, Codec, long[], int, int)}, or null if not recording
+     */
+    static Object beginDecompress() {
+        return null;
+    }
+
+    static void endDecompress(Object event, Codec codec, long[] input, int inputPos, int words) {
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+import java.util.Arrays;
+
+/**
+ * Many short series compressed into a single shared array of words.
+ *
+ * Every series is compressed separately, so each one can be decoded alone, but all the words are written to one
+ * arena array and located with an offset table. Compressing millions of short series this way allocates a handful
+ * of arrays instead of one per series, and the result is one contiguous buffer for flushing. As the words of every
+ * word based codec decode independently, the whole batch also decodes with a single call.
+ *
+ * @author Michael Burman
+ */
+public final class CompressedBatch {
+
+    private final Codec codec;
+    private final long[] arena;
+    private final int[] wordOffsets; // series + 1 entries
+    private final int[] valueOffsets; // series + 1 entries
+
+    private CompressedBatch(Codec codec, long[] arena, int[] wordOffsets, int[] valueOffsets) {
+        this.codec = codec;
+        this.arena = arena;
+        this.wordOffsets = wordOffsets;
+        this.valueOffsets = valueOffsets;
+    }
+
+    /**
+     * @param codec  Compression method
+     * @param inputs Series to compress
+     */
+    public static CompressedBatch compress(Codec codec, long[][] inputs) {
+        int[] valueOffsets = new int[inputs.length + 1];
+        for(int i = 0; i < inputs.length; i++) {
+            valueOffsets[i + 1] = Math.addExact(valueOffsets[i], inputs[i].length);
+        }
+        Arena arena = new Arena(valueOffsets[inputs.length]);
+        int[] wordOffsets = new int[inputs.length + 1];
+        for(int i = 0; i < inputs.length; i++) {
+            wordOffsets[i + 1] = arena.compress(codec, inputs[i], 0, inputs[i].length);
+        }
+        return new CompressedBatch(codec, arena.toArray(), wordOffsets, valueOffsets);
+    }
+
+    /**
+     * Compress series stored one after another in a flat array
+     *
+     * @param codec   Compression method
+     * @param values  Values of all the series
+     * @param offsets Starting position of every series in values followed by the end of the last one, so series i
+     *                is in positions [offsets[i], offsets[i + 1])
+     */
+    public static CompressedBatch compress(Codec codec, long[] values, int[] offsets) {
+        int series = offsets.length - 1;
+        int[] valueOffsets = new int[series + 1];
+        for(int i = 0; i < series; i++) {
+            if(offsets[i + 1] < offsets[i]) {
+                throw new IllegalArgumentException("Offsets must not decrease, position " + (i + 1) + " does");
+            }
+            valueOffsets[i + 1] = valueOffsets[i] + offsets[i + 1] - offsets[i];
+        }
+        Arena arena = new Arena(valueOffsets[series]);
+        int[] wordOffsets = new int[series + 1];
+        for(int i = 0; i < series; i++) {
+            wordOffsets[i + 1] = arena.compress(codec, values, offsets[i], offsets[i + 1] - offsets[i]);
+        }
+        return new CompressedBatch(codec, arena.toArray(), wordOffsets, valueOffsets);
+    }
+
+    public Codec codec() {
+        return codec;
+    }
+
+    /**
+     * @return Amount of series
+     */
+    public int seriesCount() {
+        return wordOffsets.length - 1;
+    }
+
+    /**
+     * @return Amount of values in all the series
+     */
+    public int valueCount() {
+        return valueOffsets[valueOffsets.length - 1];
+    }
+
+    public int valueCount(int series) {
+        checkSeries(series);
+        return valueOffsets[series + 1] - valueOffsets[series];
+    }
+
+    /**
+     * @return Position of the first value of the series in the output of {@link #decompressAll(long[], int)}
+     */
+    public int valueOffset(int series) {
+        checkSeries(series);
+        return valueOffsets[series];
+    }
+
+    /**
+     * @return Position of the first word of the series in the arena
+     */
+    public int wordOffset(int series) {
+        checkSeries(series);
+        return wordOffsets[series];
+    }
+
+    public int wordCount(int series) {
+        checkSeries(series);
+        return wordOffsets[series + 1] - wordOffsets[series];
+    }
+
+    /**
+     * @return Compressed words of all the series, not copied
+     */
+    public long[] arena() {
+        return arena;
+    }
+
+    /**
+     * Decompress a single series
+     *
+     * @param series    Series number
+     * @param output    Destination array, needs space for {@link #valueCount(int)} values
+     * @param outputPos Starting position in the destination
+     * @return Amount of values written
+     */
+    public int decompress(int series, long[] output, int outputPos) {
+        checkSeries(series);
+        int offset = wordOffsets[series];
+        codec.decompress(arena, offset, wordOffsets[series + 1] - offset, output, outputPos);
+        return valueOffsets[series + 1] - valueOffsets[series];
+    }
+
+    /**
+     * Decompress all the series one after another, series i starts from outputPos + {@link #valueOffset(int)}
+     *
+     * @param output    Destination array, needs space for {@link #valueCount()} values
+     * @param outputPos Starting position in the destination
+     * @return Amount of values written
+     */
+    public int decompressAll(long[] output, int outputPos) {
+        codec.decompress(arena, 0, arena.length, output, outputPos);
+        return valueCount();
+    }
+
+    private void checkSeries(int series) {
+        if(series < 0 || series >= wordOffsets.length - 1) {
+            throw new IndexOutOfBoundsException("Series " + series + " is outside [0, " + (wordOffsets.length - 1)
+                    + ")");
+        }
+    }
+
+    /**
+     * Growing word array, compresses every series directly to its end. A series of n values needs at most n words.
+     */
+    private static final class Arena {
+        private long[] words;
+        private int length = 0;
+
+        private Arena(int totalValues) {
+            // Most data compresses to less than a quarter of the values, the arena grows if not
+            this.words = new long[Math.max(16, totalValues / 4)];
+        }
+
+        /**
+         * @return Length of the arena after the series
+         */
+        private int compress(Codec codec, long[] input, int inputPos, int amount) {
+            if(words.length - length < amount) {
+                words = Arrays.copyOf(words, Math.max(words.length * 2, length + amount));
+            }
+            length += codec.compress(input, inputPos, amount, words, length);
+            return length;
+        }
+
+        private long[] toArray() {
+            return length == words.length ? words : Arrays.copyOf(words, length);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads files written by {@link CompressedFileWriter}.
+ *
+ * Opening a file reads only the header, the trailer and the block index. Blocks are then read on demand with
+ * positional reads, so a scan can skip every block whose min/max range does not match without touching its data.
+ * Not thread-safe, but opening another reader for the same file is cheap. Readers of the same file can share the
+ * decoded blocks with {@link #useCache(DecodedBlockCache, long)}.
+ *
+ * @author Michael Burman
+ */
+public class CompressedFileReader implements Closeable {
+
+    private final FileChannel channel;
+    private final Codec codec;
+    private final int blockSize;
+    private final int blocks;
+    private final long[] frameOffsets;
+    private final int[] valueCounts;
+    private final int[] wordCounts;
+    private final long[] blockStarts; // Index of the first value of each block, blocks + 1 entries
+    private final long[] mins;
+    private final long[] maxs;
+
+    private ByteBuffer frame;
+    private DecodedBlockCache cache;
+    private long streamId;
+    private boolean closed = false;
+
+    public static CompressedFileReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new CompressedFileReader(channel);
+        } catch(IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param channel Channel to read from, closed with the reader
+     */
+    public CompressedFileReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        long size = channel.size();
+        if(size < BlockFraming.HEADER_BYTES + BlockFraming.TRAILER_BYTES) {
+            throw new EOFException("File is too short to be a compressed file");
+        }
+
+        ByteBuffer header = readAt(0, BlockFraming.HEADER_BYTES);
+        BlockFraming.Header parsed = BlockFraming.readHeader(header, BlockFraming.FILE_MAGIC);
+        this.codec = parsed.codec;
+        this.blockSize = parsed.blockSize;
+
+        ByteBuffer trailer = readAt(size - BlockFraming.TRAILER_BYTES, BlockFraming.TRAILER_BYTES);
+        long indexOffset = trailer.getLong();
+        this.blocks = trailer.getInt();
+        if(trailer.getInt() != BlockFraming.FILE_MAGIC) {
+            throw new IOException("Missing file trailer, the file was not closed properly");
+        }
+        if(blocks < 0 || indexOffset < BlockFraming.HEADER_BYTES
+                || indexOffset + (long) blocks * BlockFraming.INDEX_ENTRY_BYTES + BlockFraming.TRAILER_BYTES != size) {
+            throw new IOException("Corrupted block index, " + blocks + " blocks at offset " + indexOffset);
+        }
+
+        this.frameOffsets = new long[blocks];
+        this.valueCounts = new int[blocks];
+        this.wordCounts = new int[blocks];
+        this.blockStarts = new long[blocks + 1];
+        this.mins = new long[blocks];
+        this.maxs = new long[blocks];
+
+        ByteBuffer index = readAt(indexOffset, blocks * BlockFraming.INDEX_ENTRY_BYTES);
+        for(int i = 0; i < blocks; i++) {
+            frameOffsets[i] = index.getLong();
+            valueCounts[i] = index.getInt();
+            wordCounts[i] = index.getInt();
+            mins[i] = index.getLong();
+            maxs[i] = index.getLong();
+            BlockFraming.validateFrame(valueCounts[i], wordCounts[i], blockSize);
+            if(frameOffsets[i] < BlockFraming.HEADER_BYTES || frameOffsets[i] + BlockFraming.FRAME_HEADER_BYTES
+                    + (long) wordCounts[i] * Long.BYTES > indexOffset) {
+                throw new IOException("Corrupted block index, block " + i + " is outside the data section");
+            }
+            blockStarts[i + 1] = blockStarts[i] + valueCounts[i];
+        }
+    }
+
+    public Codec codec() {
+        return codec;
+    }
+
+    public int blockSize() {
+        return blockSize;
+    }
+
+    public int blockCount() {
+        return blocks;
+    }
+
+    /**
+     * @return Amount of values in the file
+     */
+    public long valueCount() {
+        return blockStarts[blocks];
+    }
+
+    public int blockValueCount(int block) {
+        checkBlock(block);
+        return valueCounts[block];
+    }
+
+    /**
+     * @return Index of the first value of the block in the file
+     */
+    public long blockStart(int block) {
+        checkBlock(block);
+        return blockStarts[block];
+    }
+
+    public long blockMin(int block) {
+        checkBlock(block);
+        return mins[block];
+    }
+
+    public long blockMax(int block) {
+        checkBlock(block);
+        return maxs[block];
+    }
+
+    /**
+     * @return Block that holds the value at the given index
+     */
+    public int blockOf(long index) {
+        if(index < 0 || index >= valueCount()) {
+            throw new IndexOutOfBoundsException("Index " + index + " is outside [0, " + valueCount() + ")");
+        }
+        int found = Arrays.binarySearch(blockStarts, index);
+        if(found < 0) {
+            return -found - 2;
+        }
+        // Skip empty blocks that share the same start
+        while(valueCounts[found] == 0) {
+            found++;
+        }
+        return found;
+    }
+
+    /**
+     * Find the blocks that may contain values in the given range using only the index
+     *
+     * @param min Smallest accepted value, inclusive
+     * @param max Largest accepted value, inclusive
+     * @return Matching block numbers in ascending order
+     */
+    public int[] blocksInRange(long min, long max) {
+        int[] matching = new int[blocks];
+        int found = 0;
+        for(int i = 0; i < blocks; i++) {
+            if(valueCounts[i] > 0 && mins[i] <= max && maxs[i] >= min) {
+                matching[found++] = i;
+            }
+        }
+        return Arrays.copyOf(matching, found);
+    }
+
+    /**
+     * Read and decompress a single block
+     *
+     * @param block     Block number
+     * @param output    Destination array, must have space for the values of the block
+     * @param outputPos Starting position in the destination
+     * @return Amount of values written
+     */
+    public int readBlock(int block, long[] output, int outputPos) throws IOException {
+        long[] values = decodeBlock(block);
+        System.arraycopy(values, 0, output, outputPos, valueCounts[block]);
+        return valueCounts[block];
+    }
+
+    /**
+     * @return Value at the given index, reads the whole block holding it
+     */
+    public long get(long index) throws IOException {
+        int block = blockOf(index);
+        return decodeBlock(block)[(int) (index - blockStarts[block])];
+    }
+
+    /**
+     * Keep the decoded blocks in a cache, so that repeated reads of the same blocks are not read from the file and
+     * decompressed again
+     *
+     * @param cache    Cache of decoded blocks, or null to stop using a cache
+     * @param streamId Id of the file in the cache, the same for every reader of the file
+     */
+    public void useCache(DecodedBlockCache cache, long streamId) {
+        this.cache = cache;
+        this.streamId = streamId;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        channel.close();
+    }
+
+    /**
+     * @return Values of the block in a thread local scratch array or in the cache, not to be modified
+     */
+    private long[] decodeBlock(int block) throws IOException {
+        ensureOpen();
+        checkBlock(block);
+        if(cache != null) {
+            long[] cached = cache.get(streamId, block);
+            if(cached != null) {
+                return cached;
+            }
+        }
+        int wordCount = wordCounts[block];
+        int frameBytes = BlockFraming.FRAME_HEADER_BYTES + wordCount * Long.BYTES;
+        if(frame == null) {
+            frame = ByteBuffer.allocate(BlockFraming.maxFrameBytes(blockSize));
+        }
+        frame.clear();
+        frame.limit(frameBytes);
+        readFully(frame, frameOffsets[block]);
+        frame.flip();
+
+        int valueCount = frame.getInt();
+        if(valueCount != valueCounts[block] || frame.getInt() != wordCount) {
+            throw new IOException("Block " + block + " does not match the block index");
+        }
+        Simple8Context context = Simple8Context.internal();
+        long[] words = context.words(wordCount);
+        BlockFraming.readWords(frame, words, wordCount);
+        long[] values = context.decompress(codec, words, 0, wordCount, valueCount);
+        if(cache != null) {
+            values = Arrays.copyOf(values, valueCount);
+            cache.put(streamId, block, values);
+        }
+        return values;
+    }
+
+    private ByteBuffer readAt(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        readFully(buffer, position);
+        buffer.flip();
+        return buffer;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if(read < 0) {
+                throw new EOFException("Unexpected end of file");
+            }
+            position += read;
+        }
+    }
+
+    private void checkBlock(int block) {
+        if(block < 0 || block >= blocks) {
+            throw new IndexOutOfBoundsException("Block " + block + " is outside [0, " + blocks + ")");
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if(closed) {
+            throw new IOException("Reader has been closed");
+        }
+    }
+}
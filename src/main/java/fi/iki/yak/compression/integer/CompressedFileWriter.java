@@ -0,0 +1,194 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes values to a self-describing container file that can be read with {@link CompressedFileReader}.
+ *
+ * File layout:
+ * <pre>
+ * header    magic, version, codec id, block size
+ * blocks    value count, word count, compressed words
+ * index     per block: frame offset, value count, word count, min, max
+ * trailer   index offset, block count, magic
+ * </pre>
+ *
+ * Every block is compressed separately and carries its value count, so the codec specific end-of-stream handling
+ * does not matter for the stored values. The index and the trailer are written when the writer is closed, a file
+ * without them is not readable. Not thread-safe.
+ *
+ * @author Michael Burman
+ */
+public class CompressedFileWriter implements Closeable {
+
+    public static final int DEFAULT_BLOCK_SIZE = 8192;
+
+    private final FileChannel channel;
+    private final Codec codec;
+    private final long[] block;
+    private final ByteBuffer frame;
+
+    private long[] index = new long[16 * 4]; // offset, counts (value << 32 | words), min, max
+    private int blocks = 0;
+    private int blockValues = 0;
+    private long position = 0;
+    private boolean closed = false;
+
+    public CompressedFileWriter(Path path, Codec codec) throws IOException {
+        this(path, codec, DEFAULT_BLOCK_SIZE);
+    }
+
+    public CompressedFileWriter(Path path, Codec codec, int blockSize) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING), codec, blockSize);
+    }
+
+    /**
+     * @param channel   Channel to write to, starting from position 0. The channel is closed with the writer.
+     * @param codec     Compression method
+     * @param blockSize Amount of values in each block
+     */
+    public CompressedFileWriter(FileChannel channel, Codec codec, int blockSize) throws IOException {
+        if(blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive, was " + blockSize);
+        }
+        this.channel = channel;
+        this.codec = codec;
+        this.block = new long[blockSize];
+        this.frame = ByteBuffer.allocate(BlockFraming.maxFrameBytes(blockSize));
+
+        frame.clear();
+        BlockFraming.writeHeader(frame, BlockFraming.FILE_MAGIC, codec, blockSize);
+        writeBuffer();
+    }
+
+    public void writeLong(long value) throws IOException {
+        ensureOpen();
+        block[blockValues++] = value;
+        if(blockValues == block.length) {
+            writeBlock();
+        }
+    }
+
+    public void write(long[] values, int pos, int amount) throws IOException {
+        ensureOpen();
+        while(amount > 0) {
+            int copied = Math.min(amount, block.length - blockValues);
+            System.arraycopy(values, pos, block, blockValues, copied);
+            blockValues += copied;
+            pos += copied;
+            amount -= copied;
+            if(blockValues == block.length) {
+                writeBlock();
+            }
+        }
+    }
+
+    /**
+     * @return Amount of blocks written so far
+     */
+    public int blocks() {
+        return blocks;
+    }
+
+    /**
+     * Writes the remaining values, the block index and the trailer
+     */
+    @Override
+    public void close() throws IOException {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if(blockValues > 0) {
+                writeBlock();
+            }
+            writeIndex();
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for(int i = 0; i < blockValues; i++) {
+            min = Math.min(min, block[i]);
+            max = Math.max(max, block[i]);
+        }
+
+        Simple8Context context = Simple8Context.internal();
+        int words = context.compress(codec, block, 0, blockValues);
+        frame.clear();
+        BlockFraming.writeFrame(frame, blockValues, context.compressed(), words);
+
+        if((blocks + 1) * 4 > index.length) {
+            index = Arrays.copyOf(index, index.length * 2);
+        }
+        int entry = blocks * 4;
+        index[entry] = position;
+        index[entry + 1] = (long) blockValues << 32 | words;
+        index[entry + 2] = min;
+        index[entry + 3] = max;
+        blocks++;
+        blockValues = 0;
+
+        writeBuffer();
+    }
+
+    private void writeIndex() throws IOException {
+        long indexOffset = position;
+        ByteBuffer buffer = ByteBuffer.allocate(blocks * BlockFraming.INDEX_ENTRY_BYTES + BlockFraming.TRAILER_BYTES);
+        for(int i = 0; i < blocks; i++) {
+            int entry = i * 4;
+            buffer.putLong(index[entry]);
+            buffer.putInt((int) (index[entry + 1] >>> 32));
+            buffer.putInt((int) index[entry + 1]);
+            buffer.putLong(index[entry + 2]);
+            buffer.putLong(index[entry + 3]);
+        }
+        buffer.putLong(indexOffset);
+        buffer.putInt(blocks);
+        buffer.putInt(BlockFraming.FILE_MAGIC);
+        buffer.flip();
+        while(buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        frame.flip();
+        while(frame.hasRemaining()) {
+            position += channel.write(frame, position);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if(closed) {
+            throw new IOException("Writer has been closed");
+        }
+    }
+}
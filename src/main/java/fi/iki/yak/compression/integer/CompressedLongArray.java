@@ -0,0 +1,236 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.LongConsumer;
+
+/**
+ * Append-only array of longs that keeps its contents compressed.
+ *
+ * New values are collected to a small uncompressed tail. Once the tail holds a full block of values, it is sealed
+ * to compressed words with the chosen {@link Codec}. Every sealed block holds exactly blockSize values, which allows
+ * locating the block of any index without a search.
+ *
+ * Values must be in range [0, 2^60). This class is not thread-safe.
+ *
+ * @author Michael Burman
+ */
+public class CompressedLongArray {
+
+    public static final int DEFAULT_BLOCK_SIZE = 512;
+
+    private static final long MAX_VALUE = (1L << 60) - 1;
+
+    private final Codec codec;
+    private final int blockSize;
+    private final long[] tail;
+    private int tailSize = 0;
+
+    private long[] words;
+    private int wordCount = 0;
+    private int[] blockOffsets = new int[9];
+    private int blocks = 0;
+
+    private DecodedBlockCache cache;
+    private long streamId;
+
+    public CompressedLongArray(Codec codec) {
+        this(codec, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param codec     Codec used to seal full blocks
+     * @param blockSize Amount of values in each sealed block
+     */
+    public CompressedLongArray(Codec codec, int blockSize) {
+        if(blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive, was " + blockSize);
+        }
+        this.codec = codec;
+        this.blockSize = blockSize;
+        this.tail = new long[blockSize];
+        this.words = new long[blockSize];
+    }
+
+    public void add(long value) {
+        if(value < 0 || value > MAX_VALUE) {
+            throw new IllegalArgumentException("Value " + value + " is outside of the supported range [0, 2^60)");
+        }
+        tail[tailSize++] = value;
+        if(tailSize == blockSize) {
+            seal();
+        }
+    }
+
+    public void addAll(long[] values, int pos, int amount) {
+        for(int endPos = pos + amount; pos < endPos; pos++) {
+            add(values[pos]);
+        }
+    }
+
+    public int size() {
+        return blocks * blockSize + tailSize;
+    }
+
+    public Codec codec() {
+        return codec;
+    }
+
+    public int blockSize() {
+        return blockSize;
+    }
+
+    /**
+     * @return Amount of sealed blocks
+     */
+    public int blocks() {
+        return blocks;
+    }
+
+    /**
+     * @return Approximate amount of heap used by the array, including the uncompressed tail
+     */
+    public long sizeInBytes() {
+        return (long) words.length * Long.BYTES + (long) tail.length * Long.BYTES
+                + (long) blockOffsets.length * Integer.BYTES;
+    }
+
+    /**
+     * Keep the sealed blocks decoded by {@link #decodeBlock(int, long[], int)} and the iterators in a cache, so that
+     * repeated reads of the same blocks are not decompressed again. Sealed blocks never change, the uncompressed tail
+     * is not cached. Single values are read from the compressed words without the cache.
+     *
+     * @param cache    Cache of decoded blocks, or null to stop using a cache
+     * @param streamId Id of the array in the cache
+     */
+    public void useCache(DecodedBlockCache cache, long streamId) {
+        this.cache = cache;
+        this.streamId = streamId;
+    }
+
+    public long get(int index) {
+        if(index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        int block = index / blockSize;
+        int remaining = index - block * blockSize;
+        if(block == blocks) {
+            return tail[remaining];
+        }
+        for(int i = blockOffsets[block]; ; i++) {
+            long word = words[i];
+            int count = codec.valueCount(word);
+            if(remaining < count) {
+                return codec.valueAt(word, remaining);
+            }
+            remaining -= count;
+        }
+    }
+
+    /**
+     * Decompress a sealed block
+     *
+     * @param block     Index of the block
+     * @param output    Output array with room for blockSize values
+     * @param outputPos Starting position in the output
+     */
+    public void decodeBlock(int block, long[] output, int outputPos) {
+        if(block < 0 || block >= blocks) {
+            throw new IndexOutOfBoundsException("Block: " + block + ", sealed blocks: " + blocks);
+        }
+        if(cache != null) {
+            long[] cached = cache.get(streamId, block);
+            if(cached != null) {
+                System.arraycopy(cached, 0, output, outputPos, blockSize);
+                return;
+            }
+        }
+        codec.decompress(words, blockOffsets[block], blockOffsets[block + 1] - blockOffsets[block], output,
+                outputPos);
+        if(cache != null) {
+            cache.put(streamId, block, Arrays.copyOfRange(output, outputPos, outputPos + blockSize));
+        }
+    }
+
+    public long[] toArray() {
+        long[] values = new long[size()];
+        codec.decompress(words, 0, wordCount, values, 0);
+        System.arraycopy(tail, 0, values, blocks * blockSize, tailSize);
+        return values;
+    }
+
+    public void forEach(LongConsumer action) {
+        iterator().forEachRemaining(action);
+    }
+
+    /**
+     * The iterator reflects the size of the array at the time of creation
+     */
+    public PrimitiveIterator.OfLong iterator() {
+        return new ArrayIterator(size());
+    }
+
+    private void seal() {
+        if(words.length - wordCount < blockSize) {
+            words = Arrays.copyOf(words, Math.max(words.length * 2, wordCount + blockSize));
+        }
+        if(blocks + 1 == blockOffsets.length) {
+            blockOffsets = Arrays.copyOf(blockOffsets, blockOffsets.length * 2);
+        }
+        wordCount += codec.compress(tail, 0, blockSize, words, wordCount);
+        blockOffsets[++blocks] = wordCount;
+        tailSize = 0;
+    }
+
+    private class ArrayIterator implements PrimitiveIterator.OfLong {
+        private final long[] buffer = new long[blockSize];
+        private final int size;
+        private int index = 0;
+        private int position = 0;
+        private int available = 0;
+
+        private ArrayIterator(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < size;
+        }
+
+        @Override
+        public long nextLong() {
+            if(index >= size) {
+                throw new NoSuchElementException();
+            }
+            if(position == available) {
+                int block = index / blockSize;
+                if(block < blocks) {
+                    decodeBlock(block, buffer, 0);
+                } else {
+                    System.arraycopy(tail, 0, buffer, 0, tailSize);
+                }
+                available = blockSize;
+                position = 0;
+            }
+            index++;
+            return buffer[position++];
+        }
+    }
+}
@@ -0,0 +1,417 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.LongConsumer;
+
+/**
+ * Immutable sorted set of longs stored as delta compressed Simple8 blocks.
+ *
+ * Values are split to blocks of {@link #BLOCK_SIZE} values. The first value of each block is kept uncompressed in a
+ * small lookup array and the rest are stored as gaps (difference to the previous value minus one) with Simple8. A
+ * lookup is a binary search over the block first values followed by a walk over the compressed words of a single
+ * block.
+ *
+ * The gap between two consecutive values must be smaller than 2^60.
+ *
+ * @author Michael Burman
+ */
+public final class CompressedLongSet implements Iterable<Long> {
+
+    public static final int BLOCK_SIZE = 128;
+
+    private static final CompressedLongSet EMPTY = new CompressedLongSet(new long[0], new int[1], new long[0], 0);
+
+    private final long[] firstValues;
+    private final int[] blockOffsets;
+    private final long[] words;
+    private final int size;
+
+    private CompressedLongSet(long[] firstValues, int[] blockOffsets, long[] words, int size) {
+        this.firstValues = firstValues;
+        this.blockOffsets = blockOffsets;
+        this.words = words;
+        this.size = size;
+    }
+
+    /**
+     * Create a set from sorted values. Duplicate values are stored only once.
+     *
+     * @param sorted Values in ascending order
+     * @return Compressed set
+     */
+    public static CompressedLongSet of(long... sorted) {
+        return of(sorted, 0, sorted.length);
+    }
+
+    /**
+     * Create a set from sorted values. Duplicate values are stored only once.
+     *
+     * @param sorted Values in ascending order
+     * @param pos    Starting position of the values
+     * @param amount How many values to read
+     * @return Compressed set
+     */
+    public static CompressedLongSet of(long[] sorted, int pos, int amount) {
+        Builder builder = builder();
+        for(int endPos = pos + amount; pos < endPos; pos++) {
+            builder.add(sorted[pos]);
+        }
+        return builder.build();
+    }
+
+    public static CompressedLongSet empty() {
+        return EMPTY;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return Approximate amount of heap used by the set's arrays
+     */
+    public long sizeInBytes() {
+        return (long) words.length * Long.BYTES + (long) firstValues.length * Long.BYTES
+                + (long) blockOffsets.length * Integer.BYTES;
+    }
+
+    public boolean contains(long value) {
+        int block = blockOf(value);
+        if(block < 0) {
+            return false;
+        }
+        long current = firstValues[block];
+        if(current == value) {
+            return true;
+        }
+        for(int i = blockOffsets[block], end = blockOffsets[block + 1]; i < end; i++) {
+            long word = words[i];
+            for(int j = 0, count = Simple8.valueCount(word); j < count; j++) {
+                current += Simple8.valueAt(word, j) + 1;
+                if(current >= value) {
+                    return current == value;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param value Value to search for
+     * @return Amount of values in the set that are smaller than the given value
+     */
+    public int rank(long value) {
+        int block = blockOf(value);
+        if(block < 0) {
+            return 0;
+        }
+        int rank = block * BLOCK_SIZE;
+        long current = firstValues[block];
+        if(current == value) {
+            return rank;
+        }
+        rank++;
+        for(int i = blockOffsets[block], end = blockOffsets[block + 1]; i < end; i++) {
+            long word = words[i];
+            for(int j = 0, count = Simple8.valueCount(word); j < count; j++) {
+                current += Simple8.valueAt(word, j) + 1;
+                if(current >= value) {
+                    return rank;
+                }
+                rank++;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * @param index Position of the value in ascending order
+     * @return Value in the given position
+     */
+    public long select(int index) {
+        if(index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        int block = index / BLOCK_SIZE;
+        int remaining = index % BLOCK_SIZE;
+        long current = firstValues[block];
+        for(int i = blockOffsets[block]; remaining > 0; i++) {
+            long word = words[i];
+            int count = Simple8.valueCount(word);
+            for(int j = 0; j < count && remaining > 0; j++, remaining--) {
+                current += Simple8.valueAt(word, j) + 1;
+            }
+        }
+        return current;
+    }
+
+    public long first() {
+        if(size == 0) {
+            throw new NoSuchElementException();
+        }
+        return firstValues[0];
+    }
+
+    public long last() {
+        if(size == 0) {
+            throw new NoSuchElementException();
+        }
+        return select(size - 1);
+    }
+
+    /**
+     * @param other Set to combine with
+     * @return New set that contains values of both sets
+     */
+    public CompressedLongSet union(CompressedLongSet other) {
+        if(other.isEmpty()) {
+            return this;
+        }
+        if(isEmpty()) {
+            return other;
+        }
+        Builder builder = builder();
+        PrimitiveIterator.OfLong left = iterator();
+        PrimitiveIterator.OfLong right = other.iterator();
+        long l = left.nextLong();
+        long r = right.nextLong();
+        while(true) {
+            if(l <= r) {
+                builder.add(l);
+                if(!left.hasNext()) {
+                    builder.add(r);
+                    right.forEachRemaining((LongConsumer) builder::add);
+                    break;
+                }
+                l = left.nextLong();
+            } else {
+                builder.add(r);
+                if(!right.hasNext()) {
+                    builder.add(l);
+                    left.forEachRemaining((LongConsumer) builder::add);
+                    break;
+                }
+                r = right.nextLong();
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * @param other Set to combine with
+     * @return New set that contains values present in both sets
+     */
+    public CompressedLongSet intersect(CompressedLongSet other) {
+        CompressedLongSet smaller = size <= other.size ? this : other;
+        CompressedLongSet larger = smaller == this ? other : this;
+        Builder builder = builder();
+        if(smaller.isEmpty()) {
+            return builder.build();
+        }
+
+        // Probing is cheaper than merging when the sizes are far apart
+        if((long) smaller.size * 32 < larger.size) {
+            for(PrimitiveIterator.OfLong it = smaller.iterator(); it.hasNext(); ) {
+                long value = it.nextLong();
+                if(larger.contains(value)) {
+                    builder.add(value);
+                }
+            }
+            return builder.build();
+        }
+
+        PrimitiveIterator.OfLong left = smaller.iterator();
+        PrimitiveIterator.OfLong right = larger.iterator();
+        long l = left.nextLong();
+        long r = right.nextLong();
+        while(true) {
+            if(l == r) {
+                builder.add(l);
+                if(!left.hasNext() || !right.hasNext()) {
+                    break;
+                }
+                l = left.nextLong();
+                r = right.nextLong();
+            } else if(l < r) {
+                if(!left.hasNext()) {
+                    break;
+                }
+                l = left.nextLong();
+            } else {
+                if(!right.hasNext()) {
+                    break;
+                }
+                r = right.nextLong();
+            }
+        }
+        return builder.build();
+    }
+
+    public long[] toArray() {
+        long[] values = new long[size];
+        int i = 0;
+        for(PrimitiveIterator.OfLong it = iterator(); it.hasNext(); ) {
+            values[i++] = it.nextLong();
+        }
+        return values;
+    }
+
+    public void forEach(LongConsumer action) {
+        iterator().forEachRemaining(action);
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new SetIterator();
+    }
+
+    /**
+     * @return Index of the last block with a first value smaller or equal to the given value, or -1 if none
+     */
+    private int blockOf(long value) {
+        int block = Arrays.binarySearch(firstValues, value);
+        return block >= 0 ? block : -block - 2;
+    }
+
+    /**
+     * Decode a block to the buffer as absolute values
+     *
+     * @return Amount of values in the block
+     */
+    private int decodeBlock(int block, long[] buffer) {
+        int values = Math.min(BLOCK_SIZE, size - block * BLOCK_SIZE);
+        buffer[0] = firstValues[block];
+        Simple8.decompressWords(words, blockOffsets[block], blockOffsets[block + 1] - blockOffsets[block], buffer, 1);
+        for(int i = 1; i < values; i++) {
+            buffer[i] += buffer[i - 1] + 1;
+        }
+        return values;
+    }
+
+    private class SetIterator implements PrimitiveIterator.OfLong {
+        private final long[] buffer = new long[BLOCK_SIZE];
+        private int block = 0;
+        private int position = 0;
+        private int available = 0;
+
+        @Override
+        public boolean hasNext() {
+            return position < available || block < firstValues.length;
+        }
+
+        @Override
+        public long nextLong() {
+            if(position == available) {
+                if(block == firstValues.length) {
+                    throw new NoSuchElementException();
+                }
+                available = decodeBlock(block++, buffer);
+                position = 0;
+            }
+            return buffer[position++];
+        }
+    }
+
+    /**
+     * Builds a {@link CompressedLongSet} from values given in ascending order
+     */
+    public static final class Builder {
+        private final long[] block = new long[BLOCK_SIZE];
+        private int blockSize = 0;
+
+        private long[] firstValues = new long[8];
+        private int[] blockOffsets = new int[9];
+        private long[] words = new long[BLOCK_SIZE];
+        private int blocks = 0;
+        private int wordCount = 0;
+        private int size = 0;
+        private long lastSealed;
+
+        private Builder() {
+        }
+
+        /**
+         * Add the next value. Values must be given in ascending order, adding the previous value again is ignored.
+         *
+         * @param value Value to add
+         * @return this
+         */
+        public Builder add(long value) {
+            if(size > 0) {
+                long previous = blockSize > 0 ? block[blockSize - 1] : lastSealed;
+                if(value == previous) {
+                    return this;
+                }
+                if(value < previous) {
+                    throw new IllegalArgumentException("Values must be added in ascending order, " + value
+                            + " follows " + previous);
+                }
+                if(value - previous - 1 < 0 || Simple8.bits(value - previous - 1) > 60) {
+                    throw new IllegalArgumentException("Gap between " + previous + " and " + value
+                            + " does not fit in 60 bits");
+                }
+            }
+            block[blockSize++] = value;
+            size++;
+            if(blockSize == BLOCK_SIZE) {
+                seal();
+            }
+            return this;
+        }
+
+        public CompressedLongSet build() {
+            if(blockSize > 0) {
+                seal();
+            }
+            if(size == 0) {
+                return EMPTY;
+            }
+            return new CompressedLongSet(Arrays.copyOf(firstValues, blocks), Arrays.copyOf(blockOffsets, blocks + 1),
+                    Arrays.copyOf(words, wordCount), size);
+        }
+
+        private void seal() {
+            if(blocks == firstValues.length) {
+                firstValues = Arrays.copyOf(firstValues, blocks * 2);
+                blockOffsets = Arrays.copyOf(blockOffsets, blocks * 2 + 1);
+            }
+            if(words.length - wordCount < BLOCK_SIZE) {
+                words = Arrays.copyOf(words, words.length * 2);
+            }
+            long[] gaps = Simple8Context.internal().values(BLOCK_SIZE);
+            for(int i = 1; i < blockSize; i++) {
+                gaps[i - 1] = block[i] - block[i - 1] - 1;
+            }
+            firstValues[blocks] = block[0];
+            wordCount += Simple8.compress(gaps, 0, blockSize - 1, words, wordCount);
+            blockOffsets[++blocks] = wordCount;
+            lastSealed = block[blockSize - 1];
+            blockSize = 0;
+        }
+    }
+}
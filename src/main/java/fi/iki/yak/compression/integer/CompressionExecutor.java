@@ -0,0 +1,368 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Compresses many independent series concurrently.
+ *
+ * Jobs run on a work stealing {@link ForkJoinPool}, or on virtual threads when requested and the runtime (Java 21
+ * or newer) has them. At most {@code parallelism} tasks run at a time, also on virtual threads. While every task is
+ * busy, submitted jobs wait in a queue and small jobs are collected into batches that a single task compresses one
+ * after another, so a flush of millions of short series does not turn into millions of tasks. A finished task takes
+ * the next waiting job or batch. A job is dispatched alone as soon as a task is free, which keeps the latency low
+ * when the executor is idle.
+ *
+ * The amount of submitted but unfinished jobs is bounded, {@link #submit(long[], int, int)} blocks when the limit
+ * is reached. This keeps the memory held by queued jobs and their results bounded when the producers are faster
+ * than the compression.
+ *
+ * @author Michael Burman
+ */
+public final class CompressionExecutor implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_PENDING_JOBS = 1024;
+    public static final int DEFAULT_BATCH_VALUES = 4096;
+
+    private final Codec codec;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+    private final int parallelism;
+    private final int maxPendingJobs;
+    private final int batchValues;
+    private final Semaphore pending;
+    private final Simple8Context.Pool contexts;
+    private final Compressor compressor;
+
+    private final Object lock = new Object();
+    // Guarded by lock. Jobs wait only while all the tasks are running, a finishing task takes the next ones.
+    private final ArrayDeque<List<Job>> ready = new ArrayDeque<>();
+    private List<Job> batch = new ArrayList<>();
+    private int batchedValues = 0;
+    private int running = 0;
+    private boolean closed = false;
+
+    private CompressionExecutor(Builder builder) {
+        ExecutorService virtual = builder.virtualThreads ? newVirtualThreadExecutor() : null;
+        this.codec = builder.codec;
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual
+                : new ForkJoinPool(builder.parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        this.parallelism = builder.parallelism;
+        this.maxPendingJobs = builder.maxPendingJobs;
+        this.batchValues = builder.batchValues;
+        this.pending = new Semaphore(builder.maxPendingJobs);
+        this.contexts = new Simple8Context.Pool(builder.parallelism);
+        this.compressor = builder.compressor;
+    }
+
+    public static Builder builder(Codec codec) {
+        return new Builder(codec);
+    }
+
+    /**
+     * @return True if the runtime supports virtual threads
+     */
+    public static boolean virtualThreadsAvailable() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch(NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    public Codec codec() {
+        return codec;
+    }
+
+    /**
+     * @return True if the jobs run on virtual threads, false if on a work stealing pool
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public int parallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return Amount of submitted jobs that have not completed yet
+     */
+    public int pendingJobs() {
+        return maxPendingJobs - pending.availablePermits();
+    }
+
+    public CompletableFuture<long[]> submit(long[] values) throws InterruptedException {
+        return submit(values, 0, values.length);
+    }
+
+    /**
+     * Compress a series. The values are read when the job runs, so they must not be modified until the returned
+     * future has completed. Blocks while the maximum amount of jobs is pending.
+     *
+     * @param values Values to compress
+     * @param pos    Starting position of the series
+     * @param amount Amount of values in the series
+     * @return Future completed with the compressed words, or exceptionally if the values could not be compressed
+     * @throws InterruptedException  If interrupted while waiting for the pending jobs to go below the limit
+     * @throws IllegalStateException If the executor has been closed
+     */
+    public CompletableFuture<long[]> submit(long[] values, int pos, int amount) throws InterruptedException {
+        if(pos < 0 || amount < 0 || pos > values.length - amount) {
+            throw new IndexOutOfBoundsException("Range [" + pos + ", " + ((long) pos + amount) + ") is outside [0, "
+                    + values.length + ")");
+        }
+        pending.acquire();
+        Job job = new Job(values, pos, amount);
+        List<Job> dispatch = null;
+        synchronized(lock) {
+            if(closed) {
+                pending.release();
+                throw new IllegalStateException("Executor has been closed");
+            }
+            if(amount >= batchValues) {
+                ready.add(Collections.singletonList(job));
+            } else {
+                batch.add(job);
+                batchedValues += amount;
+                if(batchedValues >= batchValues) {
+                    ready.add(takeBatch());
+                }
+            }
+            if(running < parallelism) {
+                dispatch = nextJobs();
+                running++;
+            }
+        }
+        if(dispatch != null) {
+            execute(dispatch);
+        }
+        return job.future;
+    }
+
+    /**
+     * Stop accepting jobs, wait for the submitted ones to complete and release the threads
+     */
+    @Override
+    public void close() {
+        synchronized(lock) {
+            if(closed) {
+                return;
+            }
+            closed = true;
+        }
+        // Waiting jobs exist only while tasks are running, and those tasks take them before finishing
+        try {
+            synchronized(lock) {
+                while(running > 0) {
+                    lock.wait();
+                }
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void execute(List<Job> jobs) {
+        try {
+            executor.execute(() -> run(jobs));
+        } catch(RejectedExecutionException e) {
+            // The pool could not take the task, compress in the submitting thread instead of failing the jobs
+            run(jobs);
+        }
+    }
+
+    private void run(List<Job> jobs) {
+        Simple8Context context = contexts.acquire();
+        List<Job> current = jobs;
+        try {
+            // Keep compressing the jobs that were queued while this task was busy
+            while(current != null) {
+                for(Job job : current) {
+                    compress(context, job);
+                }
+                current = finished();
+            }
+        } catch(Throwable t) {
+            // Only an Error gets here. Fail the rest of the jobs and hand the waiting ones to a new task, so that
+            // the pending jobs and the running tasks are still accounted for.
+            for(Job job : current) {
+                if(!job.future.isDone()) {
+                    pending.release();
+                    job.future.completeExceptionally(t);
+                }
+            }
+            List<Job> next = finished();
+            if(next != null) {
+                execute(next);
+            }
+            throw t;
+        } finally {
+            contexts.release(context);
+        }
+    }
+
+    private void compress(Simple8Context context, Job job) {
+        long[] words;
+        try {
+            words = compressor.compress(context, codec, job.values, job.pos, job.amount);
+        } catch(RuntimeException e) {
+            pending.release();
+            job.future.completeExceptionally(e);
+            return;
+        }
+        // Release before completing, dependent stages run in this thread and may submit new jobs
+        pending.release();
+        job.future.complete(words);
+    }
+
+    /**
+     * @return The next batch for the finished task, or null if the task ends
+     */
+    private List<Job> finished() {
+        synchronized(lock) {
+            List<Job> next = nextJobs();
+            if(next == null && --running == 0) {
+                lock.notifyAll();
+            }
+            return next;
+        }
+    }
+
+    /**
+     * @return Jobs to run next, full batches and large jobs first, or null if none are waiting
+     */
+    private List<Job> nextJobs() {
+        if(!ready.isEmpty()) {
+            return ready.poll();
+        }
+        return batch.isEmpty() ? null : takeBatch();
+    }
+
+    private List<Job> takeBatch() {
+        List<Job> jobs = batch;
+        batch = new ArrayList<>();
+        batchedValues = 0;
+        return jobs;
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch(ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Compression step of a job, replaced in the tests to observe the running tasks
+     */
+    interface Compressor {
+        long[] compress(Simple8Context context, Codec codec, long[] values, int pos, int amount);
+    }
+
+    private static final class Job {
+        private final long[] values;
+        private final int pos;
+        private final int amount;
+        private final CompletableFuture<long[]> future = new CompletableFuture<>();
+
+        private Job(long[] values, int pos, int amount) {
+            this.values = values;
+            this.pos = pos;
+            this.amount = amount;
+        }
+    }
+
+    public static final class Builder {
+        private final Codec codec;
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        private int maxPendingJobs = DEFAULT_MAX_PENDING_JOBS;
+        private int batchValues = DEFAULT_BATCH_VALUES;
+        private boolean virtualThreads = false;
+        private Compressor compressor = Simple8Context::compressToArray;
+
+        private Builder(Codec codec) {
+            this.codec = codec;
+        }
+
+        /**
+         * @param parallelism Maximum amount of jobs or batches compressed at the same time
+         */
+        public Builder parallelism(int parallelism) {
+            if(parallelism <= 0) {
+                throw new IllegalArgumentException("Parallelism must be positive, was " + parallelism);
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * @param maxPendingJobs Amount of submitted but unfinished jobs after which submitting blocks
+         */
+        public Builder maxPendingJobs(int maxPendingJobs) {
+            if(maxPendingJobs <= 0) {
+                throw new IllegalArgumentException("Maximum pending jobs must be positive, was " + maxPendingJobs);
+            }
+            this.maxPendingJobs = maxPendingJobs;
+            return this;
+        }
+
+        /**
+         * @param batchValues Jobs with fewer values are batched while all the tasks are busy, and a batch is
+         *                    dispatched once it holds this many values
+         */
+        public Builder batchValues(int batchValues) {
+            if(batchValues <= 0) {
+                throw new IllegalArgumentException("Batch values must be positive, was " + batchValues);
+            }
+            this.batchValues = batchValues;
+            return this;
+        }
+
+        /**
+         * @param virtualThreads Run the jobs on virtual threads if the runtime supports them, the work stealing
+         *                       pool is used otherwise
+         */
+        public Builder virtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
+        Builder compressor(Compressor compressor) {
+            this.compressor = compressor;
+            return this;
+        }
+
+        public CompressionExecutor build() {
+            return new CompressionExecutor(this);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+import java.util.Arrays;
+
+/**
+ * Statistics of compressed data, for finding out why some data compresses poorly.
+ *
+ * Filled by the compress overloads of {@link Simple8} and {@link Simple8RLE} that take a stats instance. Those run
+ * the normal encoder and then analyze the input and the written words in a separate pass, so compression without
+ * stats has no extra cost. The counters accumulate over calls until {@link #reset()}. Not thread-safe, use
+ * {@link #merge(CompressionStats)} to combine instances from different threads.
+ *
+ * @author Michael Burman
+ */
+public final class CompressionStats {
+
+    private static final int PAYLOAD_BITS = 60;
+
+    private final long[] selectors = new long[16];
+    private final long[] bitWidths = new long[Long.SIZE + 1];
+    private final long[] runLengths = new long[Integer.SIZE]; // Power of two buckets
+    private long values;
+    private long words;
+    private long runs;
+    private long runValues;
+    private long packedWords;
+    private long wastedBits;
+
+    /**
+     * Analyze compressed words and the values they were compressed from
+     *
+     * @param codec     Codec that compressed the values
+     * @param input     Values that were compressed
+     * @param inputPos  Starting position of the compressed values
+     * @param amount    Amount of compressed values
+     * @param output    Compressed words
+     * @param outputPos Starting position of the words
+     * @param wordCount Amount of words
+     */
+    public void record(Codec codec, long[] input, int inputPos, int amount, long[] output, int outputPos,
+                       int wordCount) {
+        for(int i = inputPos; i < inputPos + amount; i++) {
+            bitWidths[Simple8.bits(input[i])]++;
+        }
+        values += amount;
+        words += wordCount;
+
+        int valuePos = inputPos;
+        for(int i = outputPos; i < outputPos + wordCount; i++) {
+            long word = output[i];
+            int selector = (int) (word >>> 60);
+            int count = codec.valueCount(word);
+            selectors[selector]++;
+            if(codec == Codec.SIMPLE8_RLE && selector == 15) {
+                runs++;
+                runValues += count;
+                runLengths[31 - Integer.numberOfLeadingZeros(count)]++;
+            } else if(count > 0 && PAYLOAD_BITS / count > 0) {
+                int used = 0;
+                for(int j = valuePos; j < Math.min(valuePos + count, inputPos + amount); j++) {
+                    used += Simple8.bits(input[j]);
+                }
+                packedWords++;
+                wastedBits += PAYLOAD_BITS - used;
+            }
+            valuePos += count;
+        }
+    }
+
+    /**
+     * Add the counters of another instance to this one
+     */
+    public CompressionStats merge(CompressionStats other) {
+        for(int i = 0; i < selectors.length; i++) {
+            selectors[i] += other.selectors[i];
+        }
+        for(int i = 0; i < bitWidths.length; i++) {
+            bitWidths[i] += other.bitWidths[i];
+        }
+        for(int i = 0; i < runLengths.length; i++) {
+            runLengths[i] += other.runLengths[i];
+        }
+        values += other.values;
+        words += other.words;
+        runs += other.runs;
+        runValues += other.runValues;
+        packedWords += other.packedWords;
+        wastedBits += other.wastedBits;
+        return this;
+    }
+
+    public void reset() {
+        Arrays.fill(selectors, 0);
+        Arrays.fill(bitWidths, 0);
+        Arrays.fill(runLengths, 0);
+        values = 0;
+        words = 0;
+        runs = 0;
+        runValues = 0;
+        packedWords = 0;
+        wastedBits = 0;
+    }
+
+    /**
+     * @return Amount of compressed values
+     */
+    public long values() {
+        return values;
+    }
+
+    /**
+     * @return Amount of written words
+     */
+    public long words() {
+        return words;
+    }
+
+    /**
+     * @return Amount of words written with each selector, indexed by the selector
+     */
+    public long[] selectorHistogram() {
+        return selectors.clone();
+    }
+
+    public long selectorCount(int selector) {
+        return selectors[selector];
+    }
+
+    /**
+     * @return Amount of input values requiring each bit width, indexed by the bit width (0 to 64)
+     */
+    public long[] bitWidthHistogram() {
+        return bitWidths.clone();
+    }
+
+    /**
+     * @return Amount of run length encoded words
+     */
+    public long runs() {
+        return runs;
+    }
+
+    /**
+     * @return Amount of values stored in run length encoded words
+     */
+    public long runValues() {
+        return runValues;
+    }
+
+    /**
+     * @return Run lengths in power of two buckets, bucket n holds runs of length [2^n, 2^(n+1))
+     */
+    public long[] runLengthHistogram() {
+        return runLengths.clone();
+    }
+
+    /**
+     * Bits of the 60 bit payload not needed by the values, summed over the words that pack values with a non-zero
+     * bit width. This includes unused padding and the difference between the shared slot width and the width of each
+     * value. The zero selectors and run length words are not included.
+     */
+    public long wastedBits() {
+        return wastedBits;
+    }
+
+    /**
+     * @return Average wasted bits in the words that pack values, see {@link #wastedBits()}
+     */
+    public double wastedBitsPerWord() {
+        return packedWords == 0 ? 0 : (double) wastedBits / packedWords;
+    }
+
+    /**
+     * @return Compressed bits per value, including the selectors
+     */
+    public double bitsPerValue() {
+        return values == 0 ? 0 : (double) words * Long.SIZE / values;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionStats{values=" + values + ", words=" + words + ", bitsPerValue=" + bitsPerValue()
+                + ", runs=" + runs + ", runValues=" + runValues + ", wastedBitsPerWord=" + wastedBitsPerWord()
+                + ", selectors=" + Arrays.toString(selectors) + "}";
+    }
+}
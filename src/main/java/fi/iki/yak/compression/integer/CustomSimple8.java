@@ -0,0 +1,190 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+import java.util.Arrays;
+
+/**
+ * Simple-8b style codec with a configurable selector table, usually one built by {@link SelectorTableTrainer}.
+ *
+ * The first compressed word is a header holding the {@link SelectorTable#id()}, so the data can be decoded with
+ * {@link #forStream(long[], int)} without knowing the table in advance. Each following word is a selector and the
+ * values packed with the width of that selector, first value in the highest bits as in {@link Simple8}. With
+ * {@link SelectorTable#SIMPLE8} the words after the header have the Simple8 layout.
+ *
+ * The kernels are table driven: a word is decoded with a loop over its values using the count, width and mask of
+ * its selector. Values must be non-negative and fit in the payload of the table, which is at least 60 bits.
+ *
+ * @author Michael Burman
+ */
+public final class CustomSimple8 {
+
+    private final SelectorTable table;
+    private final int payloadBits;
+    private final int[] counts;
+    private final int[] bits;
+    private final long[] masks;
+
+    public CustomSimple8(SelectorTable table) {
+        this.table = table;
+        this.payloadBits = table.payloadBits();
+        int selectors = 1 << table.selectorBits();
+        this.counts = new int[selectors];
+        this.bits = new int[selectors];
+        this.masks = new long[selectors];
+        for(int i = 0; i < selectors; i++) {
+            counts[i] = table.count(i);
+            bits[i] = table.bits(i);
+            masks[i] = (1L << bits[i]) - 1;
+        }
+    }
+
+    /**
+     * Create a codec for compressed data using the table stored in its header word
+     *
+     * @param input    Compressed words
+     * @param inputPos Position of the header word
+     */
+    public static CustomSimple8 forStream(long[] input, int inputPos) {
+        return new CustomSimple8(SelectorTable.forId(input[inputPos]));
+    }
+
+    public SelectorTable table() {
+        return table;
+    }
+
+    /**
+     * Compress the given array to a destination array. The output needs space for amount + 1 words in the worst
+     * case.
+     *
+     * @param input     Values to be compressed
+     * @param inputPos  Starting position of the input to compress
+     * @param amount    How many values to compress from input
+     * @param output    Output array to store the values
+     * @param outputPos Starting position of the output where to store the data
+     * @return Amount of words written, including the header word
+     */
+    public int compress(long[] input, int inputPos, int amount, long[] output, int outputPos) {
+        int startOutputPos = outputPos;
+        output[outputPos++] = table.id();
+        for(int endPos = inputPos + amount; inputPos < endPos; outputPos++) {
+            int selector = select(input, inputPos, endPos - inputPos);
+            int count = counts[selector];
+            int width = bits[selector];
+            long word = (long) selector << payloadBits;
+            if(width > 0) {
+                for(int i = 0, shift = (count - 1) * width; i < count; i++, shift -= width) {
+                    word |= input[inputPos + i] << shift;
+                }
+            }
+            output[outputPos] = word;
+            inputPos += count;
+        }
+        return outputPos - startOutputPos;
+    }
+
+    /**
+     * Decompress the given words to a destination array
+     *
+     * @param input     Compressed words, starting with the header word
+     * @param inputPos  Starting position of the words
+     * @param amount    How many words to decompress, including the header word
+     * @param output    Output array to store the values
+     * @param outputPos Starting position of the output where to store the values
+     * @return Amount of values written
+     * @throws IllegalArgumentException if the words were compressed with another table
+     */
+    public int decompress(long[] input, int inputPos, int amount, long[] output, int outputPos) {
+        if(input[inputPos] != table.id()) {
+            throw new IllegalArgumentException("Words were compressed with selector table "
+                    + Long.toHexString(input[inputPos]) + ", not " + Long.toHexString(table.id()));
+        }
+        int startOutputPos = outputPos;
+        for(int i = inputPos + 1, endPos = inputPos + amount; i < endPos; i++) {
+            long word = input[i];
+            int selector = (int) (word >>> payloadBits);
+            int count = counts[selector];
+            int width = bits[selector];
+            if(count == 0) {
+                throw new IllegalArgumentException("Unused selector " + selector + " at position " + i);
+            }
+            if(width == 0) {
+                Arrays.fill(output, outputPos, outputPos + count, 0);
+            } else {
+                long mask = masks[selector];
+                for(int j = 0, shift = (count - 1) * width; j < count; j++, shift -= width) {
+                    output[outputPos + j] = (word >>> shift) & mask;
+                }
+            }
+            outputPos += count;
+        }
+        return outputPos - startOutputPos;
+    }
+
+    /**
+     * @param word Compressed word, not the header
+     * @return Amount of values the word decodes to
+     */
+    public int valueCount(long word) {
+        return counts[(int) (word >>> payloadBits)];
+    }
+
+    /**
+     * Decode a single value from a compressed word without decoding the rest of the word
+     *
+     * @param word  Compressed word, not the header
+     * @param index Index of the value inside the word, must be smaller than {@link #valueCount(long)}
+     * @return Decoded value
+     */
+    public long valueAt(long word, int index) {
+        int selector = (int) (word >>> payloadBits);
+        return bits[selector] == 0 ? 0
+                : (word >>> ((counts[selector] - 1 - index) * bits[selector])) & masks[selector];
+    }
+
+    /**
+     * @return Amount of words the values compress to, excluding the header word
+     */
+    int countWords(long[] input, int inputPos, int amount) {
+        int words = 0;
+        for(int endPos = inputPos + amount; inputPos < endPos; words++) {
+            inputPos += counts[select(input, inputPos, endPos - inputPos)];
+        }
+        return words;
+    }
+
+    /**
+     * Find the selector with the most values that fit. Widths grow with the selector, so the values already known
+     * to fit a narrower selector are not checked again.
+     */
+    private int select(long[] input, int inputPos, int remaining) {
+        int fitting = 0;
+        for(int selector = 0; selector < counts.length; selector++) {
+            int count = counts[selector];
+            if(count == 0 || count > remaining) {
+                continue;
+            }
+            int width = bits[selector];
+            while(fitting < count && Simple8.bits(input[inputPos + fitting]) <= width) {
+                fitting++;
+            }
+            if(fitting >= count) {
+                return selector;
+            }
+        }
+        throw new RuntimeException("This compressor does not support values larger than 2^" + payloadBits);
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Memory bounded cache of decoded blocks, so that repeated reads of the same hot blocks skip decompression.
+ *
+ * Blocks are identified by a stream id and the block number. A stream id names one immutable compressed source,
+ * such as a file or a {@link ZoneMap}, and can be taken from {@link #newStreamId()} or from the caller's own
+ * numbering. The cache is split into segments, each a least recently used map behind its own lock, so concurrent
+ * readers of different blocks rarely contend. Every segment holds an equal share of the byte budget and evicts its
+ * least recently used blocks when a new block does not fit. A block larger than the share of a segment is not
+ * cached.
+ *
+ * The cache is consulted by the block readers that opt in: {@link CompressedFileReader},
+ * {@link OffHeapCompressedColumn.Reader}, {@link CompressedLongArray} and {@link ZoneMap}. Decoders that make a
+ * single sequential pass over a word stream, such as {@link Simple8Spliterator}, {@link Simple8InputStream} and
+ * {@link DecodingPublisher}, have no addressable blocks to repeat and do not use it.
+ *
+ * The cached arrays are shared between the readers and must not be modified.
+ *
+ * @author Michael Burman
+ */
+public final class DecodedBlockCache {
+
+    public static final int DEFAULT_SEGMENTS = 16;
+
+    // Estimate of the array header, the map entry and the key of every cached block
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private static final AtomicLong STREAM_IDS = new AtomicLong();
+
+    private final Segment[] segments;
+    private final long maxBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public DecodedBlockCache(long maxBytes) {
+        this(maxBytes, DEFAULT_SEGMENTS);
+    }
+
+    /**
+     * @param maxBytes Memory budget of the decoded blocks
+     * @param segments Amount of independently locked segments, rounded up to a power of two
+     */
+    public DecodedBlockCache(long maxBytes, int segments) {
+        if(maxBytes <= 0) {
+            throw new IllegalArgumentException("Memory budget must be positive, was " + maxBytes);
+        }
+        if(segments <= 0 || segments > (1 << 16)) {
+            throw new IllegalArgumentException("Segments must be in [1, 65536], was " + segments);
+        }
+        int count = segments == 1 ? 1 : Integer.highestOneBit(segments - 1) << 1;
+        this.maxBytes = maxBytes;
+        this.segments = new Segment[count];
+        for(int i = 0; i < count; i++) {
+            this.segments[i] = new Segment(maxBytes / count);
+        }
+    }
+
+    /**
+     * @return Process wide unique stream id
+     */
+    public static long newStreamId() {
+        return STREAM_IDS.incrementAndGet();
+    }
+
+    /**
+     * @param streamId Id of the compressed source
+     * @param block    Block number
+     * @return Decoded values of the block, or null if the block is not cached
+     */
+    public long[] get(long streamId, int block) {
+        Segment segment = segmentFor(streamId, block);
+        long[] values;
+        synchronized(segment) {
+            values = segment.get(new Key(streamId, block));
+        }
+        if(values != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return values;
+    }
+
+    /**
+     * Cache decoded values, replacing an earlier entry of the same block
+     *
+     * @param streamId Id of the compressed source
+     * @param block    Block number
+     * @param values   Decoded values of the block, owned by the cache afterwards
+     */
+    public void put(long streamId, int block, long[] values) {
+        Segment segment = segmentFor(streamId, block);
+        long bytes = entryBytes(values);
+        Key key = new Key(streamId, block);
+        synchronized(segment) {
+            if(bytes > segment.maxBytes) {
+                long[] previous = segment.remove(key);
+                if(previous != null) {
+                    segment.bytes -= entryBytes(previous);
+                }
+                return;
+            }
+            long[] previous = segment.put(key, values);
+            segment.bytes += bytes - (previous != null ? entryBytes(previous) : 0);
+            Iterator<long[]> eldest = segment.values().iterator();
+            while(segment.bytes > segment.maxBytes) {
+                segment.bytes -= entryBytes(eldest.next());
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Remove every cached block of a stream
+     */
+    public void invalidate(long streamId) {
+        for(Segment segment : segments) {
+            synchronized(segment) {
+                Iterator<Map.Entry<Key, long[]>> entries = segment.entrySet().iterator();
+                while(entries.hasNext()) {
+                    Map.Entry<Key, long[]> entry = entries.next();
+                    if(entry.getKey().streamId == streamId) {
+                        segment.bytes -= entryBytes(entry.getValue());
+                        entries.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        for(Segment segment : segments) {
+            synchronized(segment) {
+                segment.clear();
+                segment.bytes = 0;
+            }
+        }
+    }
+
+    /**
+     * @return Amount of cached blocks
+     */
+    public int size() {
+        int size = 0;
+        for(Segment segment : segments) {
+            synchronized(segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return Estimated memory use of the cached blocks
+     */
+    public long sizeInBytes() {
+        long bytes = 0;
+        for(Segment segment : segments) {
+            synchronized(segment) {
+                bytes += segment.bytes;
+            }
+        }
+        return bytes;
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    private Segment segmentFor(long streamId, int block) {
+        long hash = (streamId * 0x9E3779B97F4A7C15L + block) * 0xC2B2AE3D27D4EB4FL;
+        return segments[(int) (hash >>> 32) & (segments.length - 1)];
+    }
+
+    private static long entryBytes(long[] values) {
+        return ENTRY_OVERHEAD_BYTES + (long) values.length * Long.BYTES;
+    }
+
+    /**
+     * Access ordered map, the first entry is the least recently used
+     */
+    private static final class Segment extends LinkedHashMap<Key, long[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final long maxBytes;
+        private long bytes = 0;
+
+        private Segment(long maxBytes) {
+            super(16, 0.75f, true);
+            this.maxBytes = maxBytes;
+        }
+    }
+
+    private static final class Key {
+        private final long streamId;
+        private final int block;
+
+        private Key(long streamId, int block) {
+            this.streamId = streamId;
+            this.block = block;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) {
+                return true;
+            }
+            if(!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return streamId == key.streamId && block == key.block;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(streamId) + block;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publisher that decodes compressed words lazily according to subscriber demand.
+ *
+ * This follows the Reactive Streams (java.util.concurrent.Flow) contract, but works on primitive batches and runs on
+ * Java 8: demand is requested as an amount of values and each onNext call delivers a batch of at most the requested
+ * values, never more than the maximum batch size. Values are decoded only when requested, so the memory used for a
+ * slow subscriber is bounded by its demand instead of the size of the compressed data.
+ *
+ * The batch array is reused between onNext calls and must not be retained by the subscriber. Every subscriber gets
+ * an independent decoding position. Signals are delivered on the thread that calls request.
+ *
+ * @author Michael Burman
+ */
+public final class DecodingPublisher {
+
+    public static final int DEFAULT_MAX_BATCH = 1024;
+
+    private final Codec codec;
+    private final long[] words;
+    private final int pos;
+    private final int amount;
+    private final int maxBatch;
+
+    public DecodingPublisher(Codec codec, long[] words, int pos, int amount) {
+        this(codec, words, pos, amount, DEFAULT_MAX_BATCH);
+    }
+
+    /**
+     * @param codec    Codec used to compress the words
+     * @param words    Compressed words
+     * @param pos      Starting position of the words
+     * @param amount   How many words to decode
+     * @param maxBatch Maximum amount of values in a single onNext call
+     */
+    public DecodingPublisher(Codec codec, long[] words, int pos, int amount, int maxBatch) {
+        if(maxBatch <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive, was " + maxBatch);
+        }
+        this.codec = codec;
+        this.words = words;
+        this.pos = pos;
+        this.amount = amount;
+        this.maxBatch = maxBatch;
+    }
+
+    public void subscribe(Subscriber subscriber) {
+        if(subscriber == null) {
+            throw new NullPointerException("Subscriber can not be null");
+        }
+        DecodingSubscription subscription = new DecodingSubscription(subscriber,
+                new Simple8Spliterator(codec, words, pos, amount));
+        subscriber.onSubscribe(subscription);
+        subscription.drain();
+    }
+
+    /**
+     * Receiver of decoded batches, equivalent to Flow.Subscriber
+     */
+    public interface Subscriber {
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * @param batch  Decoded values, valid only for the duration of the call
+         * @param length Amount of values in the batch
+         */
+        void onNext(long[] batch, int length);
+
+        void onError(Throwable throwable);
+
+        void onComplete();
+    }
+
+    /**
+     * Demand control, equivalent to Flow.Subscription
+     */
+    public interface Subscription {
+        /**
+         * @param n Amount of additional values the subscriber is ready to receive
+         */
+        void request(long n);
+
+        void cancel();
+    }
+
+    private final class DecodingSubscription implements Subscription {
+        private final Subscriber subscriber;
+        private final Simple8Spliterator decoder;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled = false;
+        private volatile Throwable error;
+        private long[] batch = new long[0];
+
+        private DecodingSubscription(Subscriber subscriber, Simple8Spliterator decoder) {
+            this.subscriber = subscriber;
+            this.decoder = decoder;
+        }
+
+        @Override
+        public void request(long n) {
+            if(n <= 0) {
+                error = new IllegalArgumentException("Requested amount must be positive, was " + n);
+            } else {
+                for(;;) {
+                    long current = requested.get();
+                    long next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                    if(requested.compareAndSet(current, next)) {
+                        break;
+                    }
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private void drain() {
+            if(wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                emit();
+                missed = wip.addAndGet(-missed);
+            } while(missed != 0);
+        }
+
+        private void emit() {
+            while(!cancelled) {
+                Throwable t = error;
+                if(t != null) {
+                    cancelled = true;
+                    subscriber.onError(t);
+                    return;
+                }
+                if(decoder.estimateSize() == 0) {
+                    cancelled = true;
+                    subscriber.onComplete();
+                    return;
+                }
+                long demand = requested.get();
+                if(demand == 0) {
+                    return;
+                }
+                int length = decoder.read(batch(demand), 0, (int) Math.min(demand, maxBatch));
+                if(demand != Long.MAX_VALUE) {
+                    requested.addAndGet(-length);
+                }
+                try {
+                    subscriber.onNext(batch, length);
+                } catch(RuntimeException | Error e) {
+                    cancelled = true;
+                    throw e;
+                }
+            }
+        }
+
+        private long[] batch(long demand) {
+            int length = (int) Math.min(Math.min(demand, maxBatch), decoder.estimateSize());
+            if(batch.length < length) {
+                batch = new long[Math.max(length, Math.min(maxBatch, batch.length * 2))];
+            }
+            return batch;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+import java.util.Arrays;
+
+/**
+ * Dictionary encoded column for values with a low cardinality, such as status codes or host ids.
+ *
+ * Each distinct value is replaced by its code, the index in the dictionary, and the codes are compressed with the
+ * given codec. A column of a few dozen distinct large values compresses to a few bits per value, and unlike with
+ * plain Simple8 the values can be any long, including negative values. Decoding looks the codes up from a flat
+ * array. Predicates are evaluated on the codes, the dictionary is consulted once per distinct value only.
+ *
+ * @author Michael Burman
+ */
+public final class DictionaryColumn {
+
+    /**
+     * Order of the values in the dictionary
+     */
+    public enum Order {
+        /**
+         * Most common values get the smallest codes, which gives the best compression
+         */
+        FREQUENCY,
+        /**
+         * Codes follow the order of the values
+         */
+        SORTED
+    }
+
+    private final Codec codec;
+    private final long[] dictionary;
+    private final long[] words;
+    private final int size;
+
+    private DictionaryColumn(Codec codec, long[] dictionary, long[] words, int size) {
+        this.codec = codec;
+        this.dictionary = dictionary;
+        this.words = words;
+        this.size = size;
+    }
+
+    public static DictionaryColumn encode(Codec codec, long[] input) {
+        return encode(codec, input, 0, input.length, Order.FREQUENCY);
+    }
+
+    /**
+     * Build the dictionary and compress the codes of the values
+     *
+     * @param codec    Compression method for the codes
+     * @param input    Values to be encoded
+     * @param inputPos Starting position of the input to encode
+     * @param amount   How many values to encode from input
+     * @param order    Order of the dictionary
+     */
+    public static DictionaryColumn encode(Codec codec, long[] input, int inputPos, int amount, Order order) {
+        LongIntHashMap counts = new LongIntHashMap(64);
+        for(int i = inputPos; i < inputPos + amount; i++) {
+            counts.increment(input[i]);
+        }
+
+        long[] dictionary = new long[counts.size()];
+        for(int slot = 0, found = 0; slot < counts.capacity(); slot++) {
+            if(counts.isUsed(slot)) {
+                dictionary[found++] = counts.keyAt(slot);
+            }
+        }
+        Arrays.sort(dictionary);
+
+        if(order == Order.FREQUENCY) {
+            // Count in the high bits and the sorted position in the low bits, ties keep the value order
+            long[] ranked = new long[dictionary.length];
+            for(int i = 0; i < dictionary.length; i++) {
+                ranked[i] = (long) (Integer.MAX_VALUE - counts.get(dictionary[i])) << 32 | i;
+            }
+            Arrays.sort(ranked);
+            long[] sorted = dictionary.clone();
+            for(int i = 0; i < ranked.length; i++) {
+                dictionary[i] = sorted[(int) ranked[i]];
+            }
+        }
+
+        LongIntHashMap codes = new LongIntHashMap(dictionary.length);
+        for(int i = 0; i < dictionary.length; i++) {
+            codes.put(dictionary[i], i);
+        }
+        Simple8Context context = Simple8Context.internal();
+        long[] encoded = context.values(amount);
+        for(int i = 0; i < amount; i++) {
+            encoded[i] = codes.get(input[inputPos + i]);
+        }
+        return new DictionaryColumn(codec, dictionary, context.compressToArray(codec, encoded, 0, amount), amount);
+    }
+
+    public Codec codec() {
+        return codec;
+    }
+
+    /**
+     * @return Amount of values
+     */
+    public int size() {
+        return size;
+    }
+
+    public int dictionarySize() {
+        return dictionary.length;
+    }
+
+    /**
+     * @return Distinct values, indexed by their code
+     */
+    public long[] dictionary() {
+        return dictionary.clone();
+    }
+
+    /**
+     * @return Code of the value, or -1 if the value is not in the column
+     */
+    public int codeOf(long value) {
+        for(int i = 0; i < dictionary.length; i++) {
+            if(dictionary[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Size of the compressed codes and the dictionary in bytes
+     */
+    public long sizeInBytes() {
+        return ((long) words.length + dictionary.length) * Long.BYTES;
+    }
+
+    /**
+     * Decode the values to a destination array
+     *
+     * @param output    Destination array, must have space for {@link #size()} values
+     * @param outputPos Starting position in the destination
+     */
+    public void decode(long[] output, int outputPos) {
+        long[] codes = codes();
+        for(int i = 0; i < size; i++) {
+            output[outputPos + i] = dictionary[(int) codes[i]];
+        }
+    }
+
+    public long[] toArray() {
+        long[] values = new long[size];
+        decode(values, 0);
+        return values;
+    }
+
+    /**
+     * @return Amount of values equal to the given value
+     */
+    public int countEqual(long value) {
+        int code = codeOf(value);
+        if(code < 0) {
+            return 0;
+        }
+        long[] codes = codes();
+        int count = 0;
+        for(int i = 0; i < size; i++) {
+            if(codes[i] == code) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return Positions of the values equal to the given value, in ascending order
+     */
+    public int[] positionsOf(long value) {
+        int code = codeOf(value);
+        if(code < 0) {
+            return new int[0];
+        }
+        long[] codes = codes();
+        int[] positions = new int[16];
+        int found = 0;
+        for(int i = 0; i < size; i++) {
+            if(codes[i] == code) {
+                if(found == positions.length) {
+                    positions = Arrays.copyOf(positions, positions.length * 2);
+                }
+                positions[found++] = i;
+            }
+        }
+        return Arrays.copyOf(positions, found);
+    }
+
+    /**
+     * @return Amount of values in the range [min, max]
+     */
+    public int countBetween(long min, long max) {
+        boolean[] matching = new boolean[dictionary.length];
+        boolean any = false;
+        for(int i = 0; i < dictionary.length; i++) {
+            matching[i] = dictionary[i] >= min && dictionary[i] <= max;
+            any |= matching[i];
+        }
+        if(!any) {
+            return 0;
+        }
+        long[] codes = codes();
+        int count = 0;
+        for(int i = 0; i < size; i++) {
+            if(matching[(int) codes[i]]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return Codes of the values in a thread local scratch array
+     */
+    private long[] codes() {
+        return Simple8Context.internal().decompress(codec, words, 0, words.length, size);
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+/**
+ * Compresses double values by XORing each value with the previous one, as in the Gorilla paper by Pelkonen et al,
+ * "Gorilla: A Fast, Scalable, In-Memory Time Series Database".
+ *
+ * The meaningful bits of each XOR are described by the amount of leading zeros and the length of the meaningful
+ * part. Instead of Gorilla's control bits, these are stored as two integer streams compressed with
+ * {@link Simple8RLE}, and the meaningful bits are bit-packed after them. As in Gorilla, an XOR that fits the window
+ * of the previous one reuses it, which turns slowly changing series into long runs in both streams. Equal values
+ * cost only the run length encoded stream entries. The raw bits are preserved, including NaN payloads and -0.0.
+ *
+ * Layout:
+ * <pre>
+ * word 0    value count (high 32 bits), payload word count (low 32 bits)
+ * word 1    leading zeros word count (high 32 bits), length word count (low 32 bits)
+ *           leading zeros stream, length stream, payload
+ * </pre>
+ *
+ * @author Michael Burman
+ */
+public final class DoubleXorCodec {
+
+    private static final int HEADER_WORDS = 2;
+
+    private DoubleXorCodec() {
+    }
+
+    /**
+     * @param amount Amount of values to compress
+     * @return Amount of words that is enough for the compressed values
+     */
+    public static int maxCompressedLength(int amount) {
+        // Both control streams take at most one word per value, and there are at most 64 payload bits per value
+        return HEADER_WORDS + 3 * amount;
+    }
+
+    /**
+     * Compress the given values to a destination array
+     *
+     * @param input     Values to be compressed
+     * @param inputPos  Starting position of the input to compress
+     * @param amount    How many values to compress from input
+     * @param output    Output array, needs space for {@link #maxCompressedLength(int)} words
+     * @param outputPos Starting position of the output where to store the data
+     * @return Amount of words written
+     */
+    public static int compress(double[] input, int inputPos, int amount, long[] output, int outputPos) {
+        Simple8Context context = Simple8Context.internal();
+        long[] controls = context.values(2 * amount); // Leading zeros in [0, amount), lengths in [amount, 2 * amount)
+
+        long previous = 0;
+        int windowLeading = 0;
+        int windowLength = 0;
+        long payloadBits = 0;
+        for(int i = 0; i < amount; i++) {
+            long bits = Double.doubleToRawLongBits(input[inputPos + i]);
+            long xor = bits ^ previous;
+            previous = bits;
+            if(xor != 0) {
+                int leading = Long.numberOfLeadingZeros(xor);
+                int trailing = Long.numberOfTrailingZeros(xor);
+                if(windowLength == 0 || leading < windowLeading
+                        || trailing < Long.SIZE - windowLeading - windowLength) {
+                    windowLeading = leading;
+                    windowLength = Long.SIZE - leading - trailing;
+                }
+                controls[i] = windowLeading;
+                controls[amount + i] = windowLength;
+                payloadBits += windowLength;
+            } else {
+                controls[i] = windowLeading;
+                controls[amount + i] = 0;
+            }
+        }
+
+        int pos = outputPos + HEADER_WORDS;
+        int leadingWords = context.compress(Codec.SIMPLE8_RLE, controls, 0, amount);
+        System.arraycopy(context.compressed(), 0, output, pos, leadingWords);
+        pos += leadingWords;
+        int lengthWords = context.compress(Codec.SIMPLE8_RLE, controls, amount, amount);
+        System.arraycopy(context.compressed(), 0, output, pos, lengthWords);
+        pos += lengthWords;
+
+        int payloadWords = (int) ((payloadBits + Long.SIZE - 1) / Long.SIZE);
+        output[outputPos] = (long) amount << 32 | payloadWords;
+        output[outputPos + 1] = (long) leadingWords << 32 | lengthWords;
+
+        previous = 0;
+        long bitPos = 0;
+        for(int i = 0; i < amount; i++) {
+            long bits = Double.doubleToRawLongBits(input[inputPos + i]);
+            long xor = bits ^ previous;
+            previous = bits;
+            int length = (int) controls[amount + i];
+            if(length > 0) {
+                int trailing = Long.SIZE - (int) controls[i] - length;
+                writeBits(output, pos, bitPos, xor >>> trailing, length);
+                bitPos += length;
+            }
+        }
+        return pos + payloadWords - outputPos;
+    }
+
+    /**
+     * @return Amount of values stored in the compressed data starting at the given position
+     */
+    public static int valueCount(long[] input, int inputPos) {
+        return (int) (input[inputPos] >>> 32);
+    }
+
+    /**
+     * @return Amount of words used by the compressed data starting at the given position
+     */
+    public static int compressedLength(long[] input, int inputPos) {
+        long counts = input[inputPos + 1];
+        return HEADER_WORDS + (int) (counts >>> 32) + (int) counts + (int) input[inputPos];
+    }
+
+    /**
+     * Decompress values to a destination array
+     *
+     * @param input     Compressed words
+     * @param inputPos  Starting position of the compressed data
+     * @param output    Output array, needs space for {@link #valueCount(long[], int)} values
+     * @param outputPos Starting position of the output where to store the values
+     * @return Amount of values written
+     */
+    public static int decompress(long[] input, int inputPos, double[] output, int outputPos) {
+        int amount = valueCount(input, inputPos);
+        decompress(input, inputPos, output, outputPos, 0, amount);
+        return amount;
+    }
+
+    /**
+     * Decompress the values in positions [from, to), decoding stops after the last requested value
+     */
+    static void decompress(long[] input, int inputPos, double[] output, int outputPos, int from, int to) {
+        int amount = valueCount(input, inputPos);
+        int leadingWords = (int) (input[inputPos + 1] >>> 32);
+        int lengthWords = (int) input[inputPos + 1];
+
+        long[] controls = Simple8Context.internal().values(2 * amount);
+        int pos = inputPos + HEADER_WORDS;
+        Simple8RLE.decompressWords(input, pos, leadingWords, controls, 0);
+        pos += leadingWords;
+        Simple8RLE.decompressWords(input, pos, lengthWords, controls, amount);
+        pos += lengthWords;
+
+        long previous = 0;
+        long bitPos = 0;
+        for(int i = 0; i < to; i++) {
+            int length = (int) controls[amount + i];
+            if(length > 0) {
+                int trailing = Long.SIZE - (int) controls[i] - length;
+                previous ^= readBits(input, pos, bitPos, length) << trailing;
+                bitPos += length;
+            }
+            if(i >= from) {
+                output[outputPos + i - from] = Double.longBitsToDouble(previous);
+            }
+        }
+    }
+
+    /**
+     * Write the low length bits of the value, the first bits of a word are in its highest bits
+     */
+    private static void writeBits(long[] output, int pos, long bitPos, long value, int length) {
+        int word = pos + (int) (bitPos >>> 6);
+        int offset = (int) (bitPos & 63);
+        int free = Long.SIZE - offset;
+        if(offset == 0) {
+            output[word] = 0;
+        }
+        if(length <= free) {
+            output[word] |= value << (free - length);
+        } else {
+            output[word] |= value >>> (length - free);
+            output[word + 1] = value << (Long.SIZE - (length - free));
+        }
+    }
+
+    private static long readBits(long[] input, int pos, long bitPos, int length) {
+        int word = pos + (int) (bitPos >>> 6);
+        int offset = (int) (bitPos & 63);
+        int free = Long.SIZE - offset;
+        if(length <= free) {
+            return (input[word] << offset) >>> (Long.SIZE - length);
+        }
+        int rest = length - free;
+        return ((input[word] << offset) >>> offset << rest) | (input[word + 1] >>> (Long.SIZE - rest));
+    }
+}
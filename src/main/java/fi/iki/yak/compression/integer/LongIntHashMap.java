@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+/**
+ * Open addressing hash map from long keys to non-negative int values with linear probing, without boxing. The
+ * table is kept at most half full.
+ *
+ * @author Michael Burman
+ */
+final class LongIntHashMap {
+
+    private long[] keys;
+    private int[] values; // Value + 1, 0 marks an empty slot
+    private int mask;
+    private int size = 0;
+
+    LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 4) * 2 - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * @return Value of the key, or -1 if the key is not in the map
+     */
+    int get(long key) {
+        for(int slot = slot(key); ; slot = (slot + 1) & mask) {
+            int stored = values[slot];
+            if(stored == 0 || keys[slot] == key) {
+                return stored - 1;
+            }
+        }
+    }
+
+    void put(long key, int value) {
+        int slot = find(key); // May grow the arrays
+        values[slot] = value + 1;
+    }
+
+    /**
+     * Add one to the value of the key, a missing key starts from 0
+     *
+     * @return The new value
+     */
+    int increment(long key) {
+        int slot = find(key);
+        values[slot]++;
+        return values[slot] - 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return Amount of slots, for iterating with {@link #isUsed(int)}, {@link #keyAt(int)} and {@link #valueAt(int)}
+     */
+    int capacity() {
+        return keys.length;
+    }
+
+    boolean isUsed(int slot) {
+        return values[slot] != 0;
+    }
+
+    long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    int valueAt(int slot) {
+        return values[slot] - 1;
+    }
+
+    /**
+     * @return Slot of the key, an empty slot is claimed for a missing key with the value 0
+     */
+    private int find(long key) {
+        for(int slot = slot(key); ; slot = (slot + 1) & mask) {
+            int stored = values[slot];
+            if(stored == 0) {
+                if((size + 1) * 2 > keys.length) {
+                    grow();
+                    return find(key);
+                }
+                keys[slot] = key;
+                values[slot] = 1;
+                size++;
+                return slot;
+            }
+            if(keys[slot] == key) {
+                return slot;
+            }
+        }
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for(int i = 0; i < oldKeys.length; i++) {
+            if(oldValues[i] != 0) {
+                int slot = slot(oldKeys[i]);
+                while(values[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+}
@@ -0,0 +1,416 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Immutable column of compressed values stored in direct memory.
+ *
+ * The compressed words are kept in direct buffers (segments) outside of the Java heap, only a small block directory
+ * stays on heap. The memory is released deterministically once the column has been closed and every {@link Reader}
+ * has been closed. Each reader holds a reference to the column, so the memory is never released under a reader.
+ *
+ * Readers decode straight from the direct buffers and are not thread-safe, but any amount of readers can be used
+ * concurrently.
+ *
+ * @author Michael Burman
+ */
+public final class OffHeapCompressedColumn implements Closeable {
+
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+    public static final int DEFAULT_MAX_SEGMENT_BYTES = 1 << 30;
+
+    private static final int INITIAL_SEGMENT_BYTES = 1 << 16;
+    private static final int WORD_BATCH = 64;
+
+    private final Codec codec;
+    private final int blockSize;
+    private final long size;
+    private final ByteBuffer[] segments;
+    private final int[] blockSegment;
+    private final int[] blockOffset;
+    private final int[] blockWords;
+
+    private final AtomicInteger references = new AtomicInteger(1);
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private OffHeapCompressedColumn(Codec codec, int blockSize, long size, ByteBuffer[] segments, int[] blockSegment,
+                                    int[] blockOffset, int[] blockWords) {
+        this.codec = codec;
+        this.blockSize = blockSize;
+        this.size = size;
+        this.segments = segments;
+        this.blockSegment = blockSegment;
+        this.blockOffset = blockOffset;
+        this.blockWords = blockWords;
+    }
+
+    public static Builder builder(Codec codec) {
+        return new Builder(codec, DEFAULT_BLOCK_SIZE, DEFAULT_MAX_SEGMENT_BYTES);
+    }
+
+    /**
+     * @param codec           Codec used to compress the blocks
+     * @param blockSize       Amount of values in each block
+     * @param maxSegmentBytes Maximum size of a single direct buffer
+     */
+    public static Builder builder(Codec codec, int blockSize, int maxSegmentBytes) {
+        return new Builder(codec, blockSize, maxSegmentBytes);
+    }
+
+    public Codec codec() {
+        return codec;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public int blocks() {
+        return blockWords.length;
+    }
+
+    public int blockSize() {
+        return blockSize;
+    }
+
+    /**
+     * @param block Index of the block
+     * @return Amount of values stored in the block
+     */
+    public int blockValueCount(int block) {
+        if(block < 0 || block >= blockWords.length) {
+            throw new IndexOutOfBoundsException("Block: " + block + ", blocks: " + blockWords.length);
+        }
+        return block == blockWords.length - 1 ? (int) (size - (long) block * blockSize) : blockSize;
+    }
+
+    /**
+     * @return Amount of direct memory held by the column
+     */
+    public long offHeapBytes() {
+        long bytes = 0;
+        for(ByteBuffer segment : segments) {
+            bytes += segment.capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * Acquire a reference to the column. Every call must be paired with a call to {@link #release()}.
+     *
+     * @return this
+     * @throws IllegalStateException if the memory has already been released
+     */
+    public OffHeapCompressedColumn retain() {
+        for(;;) {
+            int current = references.get();
+            if(current == 0) {
+                throw new IllegalStateException("Column has been released");
+            }
+            if(references.compareAndSet(current, current + 1)) {
+                return this;
+            }
+        }
+    }
+
+    /**
+     * Release a reference to the column, freeing the direct memory when no references remain
+     */
+    public void release() {
+        int remaining = references.decrementAndGet();
+        if(remaining == 0) {
+            for(ByteBuffer segment : segments) {
+                DirectMemory.free(segment);
+            }
+        } else if(remaining < 0) {
+            references.incrementAndGet();
+            throw new IllegalStateException("Column has already been released");
+        }
+    }
+
+    /**
+     * @return true if the direct memory has been released
+     */
+    public boolean isReleased() {
+        return references.get() == 0;
+    }
+
+    /**
+     * Release the reference held by the creator of the column. Calling this method more than once has no effect.
+     */
+    @Override
+    public void close() {
+        if(closed.compareAndSet(false, true)) {
+            release();
+        }
+    }
+
+    /**
+     * @return New reader that keeps the column's memory alive until the reader is closed
+     */
+    public Reader reader() {
+        retain();
+        return new Reader();
+    }
+
+    /**
+     * Decodes values from the direct buffers of the column. Not thread-safe.
+     */
+    public final class Reader implements Closeable {
+        private final LongBuffer[] views = new LongBuffer[segments.length];
+        private final long[] scratch = new long[WORD_BATCH];
+        private DecodedBlockCache cache;
+        private long streamId;
+        private boolean open = true;
+
+        private Reader() {
+            for(int i = 0; i < segments.length; i++) {
+                views[i] = segments[i].duplicate().order(segments[i].order()).asLongBuffer();
+            }
+        }
+
+        public long size() {
+            return size;
+        }
+
+        public int blocks() {
+            return blockWords.length;
+        }
+
+        /**
+         * Keep the blocks decoded by {@link #decodeBlock(int, long[], int)} in a cache, so that repeated reads of the
+         * same blocks are not decompressed again. Single values are read from the compressed words without the cache.
+         *
+         * @param cache    Cache of decoded blocks, or null to stop using a cache
+         * @param streamId Id of the column in the cache, the same for every reader of the column
+         */
+        public void useCache(DecodedBlockCache cache, long streamId) {
+            this.cache = cache;
+            this.streamId = streamId;
+        }
+
+        public long get(long index) {
+            ensureOpen();
+            if(index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+            }
+            int block = (int) (index / blockSize);
+            int remaining = (int) (index - (long) block * blockSize);
+            LongBuffer view = views[blockSegment[block]];
+            for(int i = blockOffset[block]; ; i++) {
+                long word = view.get(i);
+                int count = codec.valueCount(word);
+                if(remaining < count) {
+                    return codec.valueAt(word, remaining);
+                }
+                remaining -= count;
+            }
+        }
+
+        /**
+         * Decompress a block to the output array
+         *
+         * @param block     Index of the block
+         * @param output    Output array with room for {@link #blockValueCount(int)} values
+         * @param outputPos Starting position in the output
+         * @return Amount of values written
+         */
+        public int decodeBlock(int block, long[] output, int outputPos) {
+            ensureOpen();
+            int values = blockValueCount(block);
+            if(cache != null) {
+                long[] cached = cache.get(streamId, block);
+                if(cached != null) {
+                    System.arraycopy(cached, 0, output, outputPos, values);
+                    return values;
+                }
+            }
+            int start = outputPos;
+            LongBuffer view = views[blockSegment[block]];
+            view.position(blockOffset[block]);
+            for(int remaining = blockWords[block]; remaining > 0; ) {
+                int batch = Math.min(WORD_BATCH, remaining);
+                view.get(scratch, 0, batch);
+                codec.decompressWords(scratch, 0, batch, output, outputPos);
+                outputPos += (int) codec.countValues(scratch, 0, batch);
+                remaining -= batch;
+            }
+            if(cache != null) {
+                cache.put(streamId, block, Arrays.copyOfRange(output, start, start + values));
+            }
+            return values;
+        }
+
+        @Override
+        public void close() {
+            if(open) {
+                open = false;
+                release();
+            }
+        }
+
+        private void ensureOpen() {
+            if(!open) {
+                throw new IllegalStateException("Reader has been closed");
+            }
+        }
+    }
+
+    /**
+     * Compresses values block by block straight to direct memory
+     */
+    public static final class Builder {
+        private final Codec codec;
+        private final int blockSize;
+        private final int maxSegmentWords;
+        private final long[] block;
+        private int blockValues = 0;
+        private long size = 0;
+
+        private final List<ByteBuffer> segments = new ArrayList<>();
+        private ByteBuffer current;
+        private LongBuffer currentView;
+        private int position = 0;
+
+        private int[] blockSegment = new int[16];
+        private int[] blockOffset = new int[16];
+        private int[] blockWords = new int[16];
+        private int blocks = 0;
+        private boolean built = false;
+
+        private Builder(Codec codec, int blockSize, int maxSegmentBytes) {
+            if(blockSize <= 0) {
+                throw new IllegalArgumentException("Block size must be positive, was " + blockSize);
+            }
+            if((long) blockSize * Long.BYTES > maxSegmentBytes) {
+                throw new IllegalArgumentException("A block of " + blockSize + " values might not fit to a segment of "
+                        + maxSegmentBytes + " bytes");
+            }
+            this.codec = codec;
+            this.blockSize = blockSize;
+            this.maxSegmentWords = maxSegmentBytes / Long.BYTES;
+            this.block = new long[blockSize];
+        }
+
+        public Builder add(long value) {
+            ensureNotBuilt();
+            block[blockValues++] = value;
+            if(blockValues == blockSize) {
+                flushBlock();
+            }
+            return this;
+        }
+
+        public Builder addAll(long[] values, int pos, int amount) {
+            for(int endPos = pos + amount; pos < endPos; pos++) {
+                add(values[pos]);
+            }
+            return this;
+        }
+
+        public OffHeapCompressedColumn build() {
+            ensureNotBuilt();
+            built = true;
+            if(blockValues > 0) {
+                flushBlock();
+            }
+            if(current != null && position < current.capacity() / Long.BYTES) {
+                ByteBuffer exact = DirectMemory.allocate(position * Long.BYTES);
+                exact.asLongBuffer().put(source(position));
+                DirectMemory.free(current);
+                segments.set(segments.size() - 1, exact);
+            }
+            OffHeapCompressedColumn column = new OffHeapCompressedColumn(codec, blockSize, size,
+                    segments.toArray(new ByteBuffer[0]), Arrays.copyOf(blockSegment, blocks),
+                    Arrays.copyOf(blockOffset, blocks), Arrays.copyOf(blockWords, blocks));
+            segments.clear();
+            current = null;
+            currentView = null;
+            return column;
+        }
+
+        private void ensureNotBuilt() {
+            if(built) {
+                throw new IllegalStateException("Column has already been built");
+            }
+        }
+
+        private void flushBlock() {
+            Simple8Context context = Simple8Context.internal();
+            int count = context.compress(codec, block, 0, blockValues);
+            ensureRoom(count);
+            currentView.position(position);
+            currentView.put(context.compressed(), 0, count);
+
+            if(blocks == blockWords.length) {
+                blockSegment = Arrays.copyOf(blockSegment, blocks * 2);
+                blockOffset = Arrays.copyOf(blockOffset, blocks * 2);
+                blockWords = Arrays.copyOf(blockWords, blocks * 2);
+            }
+            blockSegment[blocks] = segments.size() - 1;
+            blockOffset[blocks] = position;
+            blockWords[blocks] = count;
+            blocks++;
+
+            position += count;
+            size += blockValues;
+            blockValues = 0;
+        }
+
+        private void ensureRoom(int count) {
+            int capacity = current == null ? 0 : current.capacity() / Long.BYTES;
+            if(position + count <= capacity) {
+                return;
+            }
+            if(current != null && capacity < maxSegmentWords) {
+                int grown = (int) Math.min(maxSegmentWords, Math.max((long) capacity * 2, (long) position + count));
+                if(position + count <= grown) {
+                    ByteBuffer bigger = DirectMemory.allocate(grown * Long.BYTES);
+                    bigger.asLongBuffer().put(source(position));
+                    DirectMemory.free(current);
+                    segments.set(segments.size() - 1, bigger);
+                    setCurrent(bigger);
+                    return;
+                }
+            }
+            int initial = Math.min(maxSegmentWords, Math.max(INITIAL_SEGMENT_BYTES / Long.BYTES, count));
+            ByteBuffer segment = DirectMemory.allocate(initial * Long.BYTES);
+            segments.add(segment);
+            setCurrent(segment);
+            position = 0;
+        }
+
+        private LongBuffer source(int words) {
+            LongBuffer source = current.duplicate().order(current.order()).asLongBuffer();
+            source.limit(words);
+            return source;
+        }
+
+        private void setCurrent(ByteBuffer segment) {
+            current = segment;
+            currentView = segment.asLongBuffer();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+import java.util.Arrays;
+
+/**
+ * Selector layout of a {@link CustomSimple8} word: how many bits the selector takes and the (count, bit width) pair
+ * of every selector.
+ *
+ * A table has 1 to 4 selector bits, which leaves a payload of 60 to 63 bits. The selectors are, in order:
+ * <ul>
+ *     <li>up to two zero width selectors for runs of zeros, the longer one first</li>
+ *     <li>packed widths in ascending order, each with as many values as fit in the payload</li>
+ *     <li>the fallback selector, a single value of the full payload width</li>
+ * </ul>
+ *
+ * Only widths up to half of the payload are listed, wider values always go to the fallback selector. Widths that
+ * fit the same amount of values as a wider width (9 bits next to 10 bits in a 60 bit payload) are allowed, but
+ * never improve compression. The whole table is described by its 64 bit id, which {@link CustomSimple8} stores in
+ * the first word of the compressed data.
+ *
+ * @author Michael Burman
+ */
+public final class SelectorTable {
+
+    /**
+     * The layout of {@link Simple8}
+     */
+    public static final SelectorTable SIMPLE8 = create(4, new int[] { 240, 120 },
+            new int[] { 1, 2, 3, 4, 5, 6, 7, 8, 10, 12, 15, 20, 30 });
+
+    static final int MAX_ZERO_RUN = 255;
+
+    private final long id;
+    private final int selectorBits;
+    private final int[] counts;
+    private final int[] bits;
+
+    private SelectorTable(long id, int selectorBits, int[] counts, int[] bits) {
+        this.id = id;
+        this.selectorBits = selectorBits;
+        this.counts = counts;
+        this.bits = bits;
+    }
+
+    /**
+     * @param selectorBits   Size of the selector, 1 to 4 bits
+     * @param zeroRunLengths Value counts of the zero width selectors, at most two values in [1, 255]
+     * @param widths         Packed bit widths, each in [1, payload / 2]
+     */
+    public static SelectorTable create(int selectorBits, int[] zeroRunLengths, int[] widths) {
+        if(selectorBits < 1 || selectorBits > 4) {
+            throw new IllegalArgumentException("Selector must take 1 to 4 bits, was " + selectorBits);
+        }
+        if(zeroRunLengths.length > 2) {
+            throw new IllegalArgumentException("At most two zero width selectors are supported");
+        }
+        int[] zeros = zeroRunLengths.clone();
+        Arrays.sort(zeros);
+        long id = (long) (selectorBits - 1) << 48;
+        for(int i = 0; i < zeros.length; i++) {
+            if(zeros[i] < 1 || zeros[i] > MAX_ZERO_RUN) {
+                throw new IllegalArgumentException("Zero run length " + zeros[i] + " is outside [1, 255]");
+            }
+            // Longest run in bits 32-39, the second one in bits 40-47
+            id |= (long) zeros[zeros.length - 1 - i] << (32 + 8 * i);
+        }
+        for(int width : widths) {
+            if(width < 1 || width > 31) {
+                throw new IllegalArgumentException("Bit width " + width + " is outside [1, 31]");
+            }
+            id |= 1L << (width - 1);
+        }
+        if(Long.bitCount(id & 0x7FFFFFFFL) != widths.length) {
+            throw new IllegalArgumentException("Bit widths must be distinct, were " + Arrays.toString(widths));
+        }
+        return forId(id);
+    }
+
+    /**
+     * Rebuild a table from its id
+     *
+     * @param id Value returned by {@link #id()}
+     * @throws IllegalArgumentException if the id does not describe a valid table
+     */
+    public static SelectorTable forId(long id) {
+        if((id & 0xFFFC_0000_8000_0000L) != 0) {
+            throw new IllegalArgumentException("Invalid selector table id " + Long.toHexString(id));
+        }
+        int selectorBits = (int) (id >>> 48) + 1;
+        int payloadBits = Long.SIZE - selectorBits;
+        int longRun = (int) (id >>> 32) & 0xFF;
+        int shortRun = (int) (id >>> 40) & 0xFF;
+        int widthMap = (int) id;
+
+        int zeroSelectors = longRun > 0 ? (shortRun > 0 ? 2 : 1) : 0;
+        int selectors = zeroSelectors + Integer.bitCount(widthMap) + 1;
+        if(longRun == 0 && shortRun > 0 || shortRun > 0 && shortRun >= longRun) {
+            throw new IllegalArgumentException("Invalid zero run lengths in selector table id " + Long.toHexString(id));
+        }
+        if(selectors > 1 << selectorBits) {
+            throw new IllegalArgumentException(selectors + " selectors do not fit in " + selectorBits + " bits");
+        }
+        if(32 - Integer.numberOfLeadingZeros(widthMap) > payloadBits / 2) {
+            throw new IllegalArgumentException("Bit widths above " + payloadBits / 2 + " go to the fallback selector");
+        }
+
+        int[] counts = new int[1 << selectorBits];
+        int[] bits = new int[1 << selectorBits];
+        int selector = 0;
+        if(longRun > 0) {
+            counts[selector++] = longRun;
+        }
+        if(shortRun > 0) {
+            counts[selector++] = shortRun;
+        }
+        for(int width = 1; width <= 31; width++) {
+            if((widthMap & (1 << (width - 1))) != 0) {
+                bits[selector] = width;
+                counts[selector++] = payloadBits / width;
+            }
+        }
+        bits[selector] = payloadBits;
+        counts[selector] = 1;
+        return new SelectorTable(id, selectorBits, counts, bits);
+    }
+
+    /**
+     * @return Id that describes the whole table
+     */
+    public long id() {
+        return id;
+    }
+
+    public int selectorBits() {
+        return selectorBits;
+    }
+
+    /**
+     * @return Bits available for the values in each word
+     */
+    public int payloadBits() {
+        return Long.SIZE - selectorBits;
+    }
+
+    /**
+     * @return Amount of used selectors, the fallback selector is the last one
+     */
+    public int selectors() {
+        int used = 0;
+        while(used < counts.length && counts[used] > 0) {
+            used++;
+        }
+        return used;
+    }
+
+    /**
+     * @return Amount of values in a word with the given selector, 0 for an unused selector
+     */
+    public int count(int selector) {
+        return counts[selector];
+    }
+
+    /**
+     * @return Bit width of the values in a word with the given selector
+     */
+    public int bits(int selector) {
+        return bits[selector];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof SelectorTable && ((SelectorTable) o).id == id;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(id);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("SelectorTable{selectorBits=").append(selectorBits).append(", selectors=");
+        for(int i = 0; i < selectors(); i++) {
+            sb.append(i == 0 ? "" : " ").append(counts[i]).append('x').append(bits[i]);
+        }
+        return sb.append('}').toString();
+    }
+}
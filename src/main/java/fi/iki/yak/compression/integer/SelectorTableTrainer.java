@@ -0,0 +1,172 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the {@link SelectorTable} that compresses a sample of values to the fewest words.
+ *
+ * With a 60 bit payload the packed widths of Simple8 are already every width that fits a different amount of values,
+ * so the gains come from the size of the selector: data concentrated on a few widths needs fewer selectors, and the
+ * bits saved go to the payload. For example 9 bit values fit 7 to a word with a 63 bit payload instead of 6 in
+ * Simple8. The trainer tries every selector size, fills the selectors greedily with the candidate that saves the
+ * most words and then swaps single selectors while that keeps improving. Every evaluation encodes the sample, a few
+ * thousand representative values are enough.
+ *
+ * @author Michael Burman
+ */
+public final class SelectorTableTrainer {
+
+    private static final int[] ZERO_RUN_CANDIDATES = { 255, 240, 120, 60 };
+
+    private SelectorTableTrainer() {
+    }
+
+    public static SelectorTable train(long[] sample) {
+        return train(sample, 0, sample.length);
+    }
+
+    /**
+     * @param sample    Representative values
+     * @param samplePos Starting position of the sample
+     * @param amount    Amount of values in the sample
+     * @return Table that compresses the sample to the fewest words, {@link SelectorTable#SIMPLE8} on a tie
+     */
+    public static SelectorTable train(long[] sample, int samplePos, int amount) {
+        SelectorTable best = SelectorTable.SIMPLE8;
+        int bestWords = new CustomSimple8(best).countWords(sample, samplePos, amount);
+        for(int selectorBits = 4; selectorBits >= 1; selectorBits--) {
+            Candidate candidate = search(selectorBits, sample, samplePos, amount);
+            if(candidate.words < bestWords) {
+                best = candidate.table;
+                bestWords = candidate.words;
+            }
+        }
+        return best;
+    }
+
+    private static Candidate search(int selectorBits, long[] sample, int samplePos, int amount) {
+        List<Integer> pool = candidates(Long.SIZE - selectorBits);
+        int slots = (1 << selectorBits) - 1; // One selector is the fallback
+        List<Integer> chosen = new ArrayList<>();
+        Candidate current = evaluate(selectorBits, chosen, sample, samplePos, amount);
+
+        // Greedy fill
+        while(chosen.size() < slots) {
+            Candidate bestAdd = null;
+            Integer added = null;
+            for(Integer entry : pool) {
+                if(chosen.contains(entry)) {
+                    continue;
+                }
+                chosen.add(entry);
+                Candidate c = evaluate(selectorBits, chosen, sample, samplePos, amount);
+                chosen.remove(chosen.size() - 1);
+                if(c != null && (bestAdd == null || c.words < bestAdd.words)) {
+                    bestAdd = c;
+                    added = entry;
+                }
+            }
+            if(bestAdd == null || bestAdd.words >= current.words) {
+                break;
+            }
+            chosen.add(added);
+            current = bestAdd;
+        }
+
+        // Swap single entries while that improves
+        boolean improved = true;
+        while(improved) {
+            improved = false;
+            for(int i = 0; i < chosen.size() && !improved; i++) {
+                Integer removed = chosen.get(i);
+                for(Integer entry : pool) {
+                    if(chosen.contains(entry)) {
+                        continue;
+                    }
+                    chosen.set(i, entry);
+                    Candidate c = evaluate(selectorBits, chosen, sample, samplePos, amount);
+                    if(c != null && c.words < current.words) {
+                        current = c;
+                        improved = true;
+                        break;
+                    }
+                    chosen.set(i, removed);
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Zero run lengths are stored as negative numbers, packed widths as positive
+     */
+    private static List<Integer> candidates(int payloadBits) {
+        List<Integer> pool = new ArrayList<>();
+        for(int run : ZERO_RUN_CANDIDATES) {
+            pool.add(-run);
+        }
+        for(int width = 1; width <= payloadBits / 2; width++) {
+            // Skip widths that fit as many values as the next wider one
+            if(payloadBits / width != payloadBits / (width + 1)) {
+                pool.add(width);
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * @return Result for the entries, null if they do not form a valid table
+     */
+    private static Candidate evaluate(int selectorBits, List<Integer> entries, long[] sample, int samplePos,
+                                      int amount) {
+        int zeros = 0;
+        int widths = 0;
+        for(int entry : entries) {
+            if(entry < 0) {
+                zeros++;
+            } else {
+                widths++;
+            }
+        }
+        if(zeros > 2) {
+            return null;
+        }
+        int[] zeroRuns = new int[zeros];
+        int[] packed = new int[widths];
+        for(int entry : entries) {
+            if(entry < 0) {
+                zeroRuns[--zeros] = -entry;
+            } else {
+                packed[--widths] = entry;
+            }
+        }
+        SelectorTable table = SelectorTable.create(selectorBits, zeroRuns, packed);
+        return new Candidate(table, new CustomSimple8(table).countWords(sample, samplePos, amount));
+    }
+
+    private static final class Candidate {
+        private final SelectorTable table;
+        private final int words;
+
+        private Candidate(SelectorTable table, int words) {
+            this.table = table;
+            this.words = words;
+        }
+    }
+}
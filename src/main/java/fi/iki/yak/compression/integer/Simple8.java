@@ -15,7 +15,10 @@
  */
 package fi.iki.yak.compression.integer;
 
-import java.util.Arrays;
+import static fi.iki.yak.compression.integer.Simple8Kernels.*;
+
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
 
 /**
  * Implements the Simple-8b integer compression method as described in the paper by Anh et al,
@@ -42,10 +45,40 @@ public class Simple8 {
             2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
             1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, -1};
 
+    private static final int[] SELECTOR_COUNT = {240, 120, 60, 30, 20, 15, 12, 10, 8, 7, 6, 5, 4, 3, 2, 1};
+
+    private static final int[] SELECTOR_BITS = {0, 0, 1, 2, 3, 4, 5, 6, 7, 8, 10, 12, 15, 20, 30, 60};
+
     public static int bits(long value) {
         return Long.SIZE - Long.numberOfLeadingZeros(value);
     }
 
+    /**
+     * Amount of values stored in a single compressed word
+     *
+     * @param word Compressed word
+     * @return Amount of values the word decodes to
+     */
+    public static int valueCount(long word) {
+        return SELECTOR_COUNT[(int) (word >>> 60)];
+    }
+
+    /**
+     * Decode a single value from a compressed word without decoding the rest of the word
+     *
+     * @param word  Compressed word
+     * @param index Index of the value inside the word, must be smaller than {@link #valueCount(long)}
+     * @return Decoded value
+     */
+    public static long valueAt(long word, int index) {
+        int selector = (int) (word >>> 60);
+        int bits = SELECTOR_BITS[selector];
+        if(bits == 0) {
+            return 0;
+        }
+        return (word >>> ((SELECTOR_COUNT[selector] - 1 - index) * bits)) & ((1L << bits) - 1);
+    }
+
     /**
      * Compress the input array to output array
      *
@@ -57,6 +90,25 @@ public class Simple8 {
         return compress(input, 0, input.length, output, 0);
     }
 
+    /**
+     * Compress the given array to a destination array and record statistics of the result. The statistics are
+     * collected in a separate pass after compression, the other compress methods are not affected.
+     *
+     * @param input     Values to be compressed
+     * @param inputPos  Starting position of the input to compress
+     * @param amount    How many values to compress from input
+     * @param output    Output array to store the values
+     * @param outputPos Starting position of the output where to store the data
+     * @param stats     Statistics collector
+     * @return Amount of words written
+     */
+    public static int compress(long[] input, int inputPos, int amount, long[] output, int outputPos,
+                               CompressionStats stats) {
+        int words = compress(input, inputPos, amount, output, outputPos);
+        stats.record(Codec.SIMPLE8, input, inputPos, amount, output, outputPos, words);
+        return words;
+    }
+
     /**
      * Compress the given array to a destination array
      *
@@ -68,6 +120,13 @@ public class Simple8 {
      * @return Amount of words written
      */
     public static int compress(long[] input, int inputPos, int amount, long[] output, int outputPos) {
+        Object event = CodecEvents.beginCompress();
+        int words = compressWords(input, inputPos, amount, output, outputPos);
+        CodecEvents.endCompress(event, Codec.SIMPLE8, amount, words);
+        return words;
+    }
+
+    private static int compressWords(long[] input, int inputPos, int amount, long[] output, int outputPos) {
         int startOutputPos = outputPos;
         for (int endPos = inputPos + amount; inputPos < endPos;) {
             int integersToCompress = 0; // How many integers to compress to next word
@@ -79,9 +138,10 @@ public class Simple8 {
                          <= AVAILABLE_BITS[maxBitsRequired]);
                     ) {
                 toCompressBits = maxBitsRequired;
-                if(inputPos + integersToCompress + 1 < endPos) {
+                if(inputPos + integersToCompress + 1 < endPos && integersToCompress < 239) {
                     nextBitsRequired = bits(input[inputPos + ++integersToCompress]);
                 } else {
+                    // End of input or a full word of zeros
                     ++integersToCompress;
                     break;
                 }
@@ -214,7 +274,25 @@ public class Simple8 {
         return outputPos - startOutputPos;
     }
 
+    /**
+     * Decompress the given words to a destination array
+     *
+     * @param input     Compressed words
+     * @param inputPos  Starting position of the words
+     * @param amount    How many words to decompress
+     * @param output    Output array to store the values
+     * @param outputPos Starting position of the output where to store the values
+     */
     public static void decompress(long[] input, int inputPos, int amount, long[] output, int outputPos) {
+        Object event = CodecEvents.beginDecompress();
+        decompressWords(input, inputPos, amount, output, outputPos);
+        CodecEvents.endDecompress(event, Codec.SIMPLE8, input, inputPos, amount);
+    }
+
+    /**
+     * Decompress without recording an event, for the decodes inside the library
+     */
+    static void decompressWords(long[] input, int inputPos, int amount, long[] output, int outputPos) {
 
         for (int endPos = inputPos + amount; inputPos < endPos; inputPos++) {
             int selector = (int) (input[inputPos] >>> 60);
@@ -288,487 +366,74 @@ public class Simple8 {
         }
     }
 
-    // Encode functions - without mask as we already check the length of leadingZeros
-
-    private static void encode0(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] = 0;
-    }
-
-    private static void encode1(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] |= 1L << 60;
-    }
-
-    private static void encode2(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] |= 2L << 60;
-        output[outputPos] |= (input[startPos]) << 59;
-        output[outputPos] |= (input[startPos + 1]) << 58;
-        output[outputPos] |= (input[startPos + 2]) << 57;
-        output[outputPos] |= (input[startPos + 3]) << 56;
-        output[outputPos] |= (input[startPos + 4]) << 55;
-        output[outputPos] |= (input[startPos + 5]) << 54;
-        output[outputPos] |= (input[startPos + 6]) << 53;
-        output[outputPos] |= (input[startPos + 7]) << 52;
-        output[outputPos] |= (input[startPos + 8]) << 51;
-        output[outputPos] |= (input[startPos + 9]) << 50;
-        output[outputPos] |= (input[startPos + 10]) << 49;
-        output[outputPos] |= (input[startPos + 11]) << 48;
-        output[outputPos] |= (input[startPos + 12]) << 47;
-        output[outputPos] |= (input[startPos + 13]) << 46;
-        output[outputPos] |= (input[startPos + 14]) << 45;
-        output[outputPos] |= (input[startPos + 15]) << 44;
-        output[outputPos] |= (input[startPos + 16]) << 43;
-        output[outputPos] |= (input[startPos + 17]) << 42;
-        output[outputPos] |= (input[startPos + 18]) << 41;
-        output[outputPos] |= (input[startPos + 19]) << 40;
-        output[outputPos] |= (input[startPos + 20]) << 39;
-        output[outputPos] |= (input[startPos + 21]) << 38;
-        output[outputPos] |= (input[startPos + 22]) << 37;
-        output[outputPos] |= (input[startPos + 23]) << 36;
-        output[outputPos] |= (input[startPos + 24]) << 35;
-        output[outputPos] |= (input[startPos + 25]) << 34;
-        output[outputPos] |= (input[startPos + 26]) << 33;
-        output[outputPos] |= (input[startPos + 27]) << 32;
-        output[outputPos] |= (input[startPos + 28]) << 31;
-        output[outputPos] |= (input[startPos + 29]) << 30;
-        output[outputPos] |= (input[startPos + 30]) << 29;
-        output[outputPos] |= (input[startPos + 31]) << 28;
-        output[outputPos] |= (input[startPos + 32]) << 27;
-        output[outputPos] |= (input[startPos + 33]) << 26;
-        output[outputPos] |= (input[startPos + 34]) << 25;
-        output[outputPos] |= (input[startPos + 35]) << 24;
-        output[outputPos] |= (input[startPos + 36]) << 23;
-        output[outputPos] |= (input[startPos + 37]) << 22;
-        output[outputPos] |= (input[startPos + 38]) << 21;
-        output[outputPos] |= (input[startPos + 39]) << 20;
-        output[outputPos] |= (input[startPos + 40]) << 19;
-        output[outputPos] |= (input[startPos + 41]) << 18;
-        output[outputPos] |= (input[startPos + 42]) << 17;
-        output[outputPos] |= (input[startPos + 43]) << 16;
-        output[outputPos] |= (input[startPos + 44]) << 15;
-        output[outputPos] |= (input[startPos + 45]) << 14;
-        output[outputPos] |= (input[startPos + 46]) << 13;
-        output[outputPos] |= (input[startPos + 47]) << 12;
-        output[outputPos] |= (input[startPos + 48]) << 11;
-        output[outputPos] |= (input[startPos + 49]) << 10;
-        output[outputPos] |= (input[startPos + 50]) << 9;
-        output[outputPos] |= (input[startPos + 51]) << 8;
-        output[outputPos] |= (input[startPos + 52]) << 7;
-        output[outputPos] |= (input[startPos + 53]) << 6;
-        output[outputPos] |= (input[startPos + 54]) << 5;
-        output[outputPos] |= (input[startPos + 55]) << 4;
-        output[outputPos] |= (input[startPos + 56]) << 3;
-        output[outputPos] |= (input[startPos + 57]) << 2;
-        output[outputPos] |= (input[startPos + 58]) << 1;
-        output[outputPos] |= (input[startPos + 59]);
-    }
-
-    private static void encode3(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] |= 3L << 60;
-        output[outputPos] |= (input[startPos]) << 58;
-        output[outputPos] |= (input[startPos + 1]) << 56;
-        output[outputPos] |= (input[startPos + 2]) << 54;
-        output[outputPos] |= (input[startPos + 3]) << 52;
-        output[outputPos] |= (input[startPos + 4]) << 50;
-        output[outputPos] |= (input[startPos + 5]) << 48;
-        output[outputPos] |= (input[startPos + 6]) << 46;
-        output[outputPos] |= (input[startPos + 7]) << 44;
-        output[outputPos] |= (input[startPos + 8]) << 42;
-        output[outputPos] |= (input[startPos + 9]) << 40;
-        output[outputPos] |= (input[startPos + 10]) << 38;
-        output[outputPos] |= (input[startPos + 11]) << 36;
-        output[outputPos] |= (input[startPos + 12]) << 34;
-        output[outputPos] |= (input[startPos + 13]) << 32;
-        output[outputPos] |= (input[startPos + 14]) << 30;
-        output[outputPos] |= (input[startPos + 15]) << 28;
-        output[outputPos] |= (input[startPos + 16]) << 26;
-        output[outputPos] |= (input[startPos + 17]) << 24;
-        output[outputPos] |= (input[startPos + 18]) << 22;
-        output[outputPos] |= (input[startPos + 19]) << 20;
-        output[outputPos] |= (input[startPos + 20]) << 18;
-        output[outputPos] |= (input[startPos + 21]) << 16;
-        output[outputPos] |= (input[startPos + 22]) << 14;
-        output[outputPos] |= (input[startPos + 23]) << 12;
-        output[outputPos] |= (input[startPos + 24]) << 10;
-        output[outputPos] |= (input[startPos + 25]) << 8;
-        output[outputPos] |= (input[startPos + 26]) << 6;
-        output[outputPos] |= (input[startPos + 27]) << 4;
-        output[outputPos] |= (input[startPos + 28]) << 2;
-        output[outputPos] |= (input[startPos + 29]);
-    }
-
-    private static void encode4(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] |= 4L << 60;
-        output[outputPos] |= (input[startPos]) << 57;
-        output[outputPos] |= (input[startPos + 1]) << 54;
-        output[outputPos] |= (input[startPos + 2]) << 51;
-        output[outputPos] |= (input[startPos + 3]) << 48;
-        output[outputPos] |= (input[startPos + 4]) << 45;
-        output[outputPos] |= (input[startPos + 5]) << 42;
-        output[outputPos] |= (input[startPos + 6]) << 39;
-        output[outputPos] |= (input[startPos + 7]) << 36;
-        output[outputPos] |= (input[startPos + 8]) << 33;
-        output[outputPos] |= (input[startPos + 9]) << 30;
-        output[outputPos] |= (input[startPos + 10]) << 27;
-        output[outputPos] |= (input[startPos + 11]) << 24;
-        output[outputPos] |= (input[startPos + 12]) << 21;
-        output[outputPos] |= (input[startPos + 13]) << 18;
-        output[outputPos] |= (input[startPos + 14]) << 15;
-        output[outputPos] |= (input[startPos + 15]) << 12;
-        output[outputPos] |= (input[startPos + 16]) << 9;
-        output[outputPos] |= (input[startPos + 17]) << 6;
-        output[outputPos] |= (input[startPos + 18]) << 3;
-        output[outputPos] |= (input[startPos + 19]);
-    }
-
-    private static void encode5(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] |= 5L << 60;
-        output[outputPos] |= (input[startPos]) << 56;
-        output[outputPos] |= (input[startPos + 1]) << 52;
-        output[outputPos] |= (input[startPos + 2]) << 48;
-        output[outputPos] |= (input[startPos + 3]) << 44;
-        output[outputPos] |= (input[startPos + 4]) << 40;
-        output[outputPos] |= (input[startPos + 5]) << 36;
-        output[outputPos] |= (input[startPos + 6]) << 32;
-        output[outputPos] |= (input[startPos + 7]) << 28;
-        output[outputPos] |= (input[startPos + 8]) << 24;
-        output[outputPos] |= (input[startPos + 9]) << 20;
-        output[outputPos] |= (input[startPos + 10]) << 16;
-        output[outputPos] |= (input[startPos + 11]) << 12;
-        output[outputPos] |= (input[startPos + 12]) << 8;
-        output[outputPos] |= (input[startPos + 13]) << 4;
-        output[outputPos] |= (input[startPos + 14]);
-    }
-
-    private static void encode6(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] |= 6L << 60;
-        output[outputPos] |= (input[startPos]) << 55;
-        output[outputPos] |= (input[startPos + 1]) << 50;
-        output[outputPos] |= (input[startPos + 2]) << 45;
-        output[outputPos] |= (input[startPos + 3]) << 40;
-        output[outputPos] |= (input[startPos + 4]) << 35;
-        output[outputPos] |= (input[startPos + 5]) << 30;
-        output[outputPos] |= (input[startPos + 6]) << 25;
-        output[outputPos] |= (input[startPos + 7]) << 20;
-        output[outputPos] |= (input[startPos + 8]) << 15;
-        output[outputPos] |= (input[startPos + 9]) << 10;
-        output[outputPos] |= (input[startPos + 10]) << 5;
-        output[outputPos] |= (input[startPos + 11]);
-    }
-
-    private static void encode7(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] |= 7L << 60;
-        output[outputPos] |= (input[startPos]) << 54;
-        output[outputPos] |= (input[startPos + 1]) << 48;
-        output[outputPos] |= (input[startPos + 2]) << 42;
-        output[outputPos] |= (input[startPos + 3]) << 36;
-        output[outputPos] |= (input[startPos + 4]) << 30;
-        output[outputPos] |= (input[startPos + 5]) << 24;
-        output[outputPos] |= (input[startPos + 6]) << 18;
-        output[outputPos] |= (input[startPos + 7]) << 12;
-        output[outputPos] |= (input[startPos + 8]) << 6;
-        output[outputPos] |= (input[startPos + 9]);
-    }
-    private static void encode8(long[] input, int startPos, long[] output, int outputPos) {
-        output[outputPos] |= 8L << 60;
-        output[outputPos] |= (input[startPos]) << 49;
-        output[outputPos] |= (input[startPos + 1]) << 42;
-        output[outputPos] |= (input[startPos + 2]) << 35;
-        output[outputPos] |= (input[startPos + 3]) << 28;
-        output[outputPos] |= (input[startPos + 4]) << 21;
-        output[outputPos] |= (input[startPos + 5]) << 14;
-        output[outputPos] |= (input[startPos + 6]) << 7;
-        output[outputPos] |= (input[startPos + 7]);
-    }
-
-    private static void encode9(long[] input, int startPos, long[] output, int outputPos) {
-        output[outputPos] |= 9L << 60;
-        output[outputPos] |= (input[startPos]) << 48;
-        output[outputPos] |= (input[startPos + 1]) << 40;
-        output[outputPos] |= (input[startPos + 2]) << 32;
-        output[outputPos] |= (input[startPos + 3]) << 24;
-        output[outputPos] |= (input[startPos + 4]) << 16;
-        output[outputPos] |= (input[startPos + 5]) << 8;
-        output[outputPos] |= (input[startPos + 6]);
-    }
-
-    private static void encode10(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] |= 10L << 60;
-        output[outputPos] |= (input[startPos]) << 50;
-        output[outputPos] |= (input[startPos + 1]) << 40;
-        output[outputPos] |= (input[startPos + 2]) << 30;
-        output[outputPos] |= (input[startPos + 3]) << 20;
-        output[outputPos] |= (input[startPos + 4]) << 10;
-        output[outputPos] |= (input[startPos + 5]);
-    }
-
-    private static void encode11(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] |= 11L << 60;
-        output[outputPos] |= (input[startPos]) << 48;
-        output[outputPos] |= (input[startPos + 1]) << 36;
-        output[outputPos] |= (input[startPos + 2]) << 24;
-        output[outputPos] |= (input[startPos + 3]) << 12;
-        output[outputPos] |= (input[startPos + 4]);
-    }
-
-    private static void encode12(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] |= 12L << 60;
-        output[outputPos] |= (input[startPos]) << 45;
-        output[outputPos] |= (input[startPos + 1]) << 30;
-        output[outputPos] |= (input[startPos + 2]) << 15;
-        output[outputPos] |= (input[startPos + 3]);
-    }
-
-    private static void encode13(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] |= 13L << 60;
-        output[outputPos] |= (input[startPos]) << 40;
-        output[outputPos] |= (input[startPos + 1]) << 20;
-        output[outputPos] |= (input[startPos + 2]);
-    }
-
-    private static void encode14(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] |= 14L << 60;
-        output[outputPos] |= (input[startPos]) << 30;
-        output[outputPos] |= (input[startPos + 1]);
-    }
-
-    private static void encode15(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] |= 15L << 60;
-        output[outputPos] |= (input[startPos]);
-    }
-
-    // Decode functions
-    private static void decode0(final long[] input, int startPos, final long[] output, int outputPos) {
-        Arrays.fill(output, outputPos, outputPos+240, 0);
-    }
-
-    private static void decode1(final long[] input, int startPos, final long[] output, int outputPos) {
-        Arrays.fill(output, outputPos, outputPos+120, 0);
-    }
-
-    private static void decode2(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] = (input[startPos] >>> 59) & 1;
-        output[outputPos+1] = (input[startPos] >>> 58) & 1;
-        output[outputPos+2] = (input[startPos] >>> 57) & 1;
-        output[outputPos+3] = (input[startPos] >>> 56) & 1;
-        output[outputPos+4] = (input[startPos] >>> 55) & 1;
-        output[outputPos+5] = (input[startPos] >>> 54) & 1;
-        output[outputPos+6] = (input[startPos] >>> 53) & 1;
-        output[outputPos+7] = (input[startPos] >>> 52) & 1;
-        output[outputPos+8] = (input[startPos] >>> 51) & 1;
-        output[outputPos+9] = (input[startPos] >>> 50) & 1;
-        output[outputPos+10] = (input[startPos] >>> 49) & 1;
-        output[outputPos+11] = (input[startPos] >>> 48) & 1;
-        output[outputPos+12] = (input[startPos] >>> 47) & 1;
-        output[outputPos+13] = (input[startPos] >>> 46) & 1;
-        output[outputPos+14] = (input[startPos] >>> 45) & 1;
-        output[outputPos+15] = (input[startPos] >>> 44) & 1;
-        output[outputPos+16] = (input[startPos] >>> 43) & 1;
-        output[outputPos+17] = (input[startPos] >>> 42) & 1;
-        output[outputPos+18] = (input[startPos] >>> 41) & 1;
-        output[outputPos+19] = (input[startPos] >>> 40) & 1;
-        output[outputPos+20] = (input[startPos] >>> 39) & 1;
-        output[outputPos+21] = (input[startPos] >>> 38) & 1;
-        output[outputPos+22] = (input[startPos] >>> 37) & 1;
-        output[outputPos+23] = (input[startPos] >>> 36) & 1;
-        output[outputPos+24] = (input[startPos] >>> 35) & 1;
-        output[outputPos+25] = (input[startPos] >>> 34) & 1;
-        output[outputPos+26] = (input[startPos] >>> 33) & 1;
-        output[outputPos+27] = (input[startPos] >>> 32) & 1;
-        output[outputPos+28] = (input[startPos] >>> 31) & 1;
-        output[outputPos+29] = (input[startPos] >>> 30) & 1;
-        output[outputPos+30] = (input[startPos] >>> 29) & 1;
-        output[outputPos+31] = (input[startPos] >>> 28) & 1;
-        output[outputPos+32] = (input[startPos] >>> 27) & 1;
-        output[outputPos+33] = (input[startPos] >>> 26) & 1;
-        output[outputPos+34] = (input[startPos] >>> 25) & 1;
-        output[outputPos+35] = (input[startPos] >>> 24) & 1;
-        output[outputPos+36] = (input[startPos] >>> 23) & 1;
-        output[outputPos+37] = (input[startPos] >>> 22) & 1;
-        output[outputPos+38] = (input[startPos] >>> 21) & 1;
-        output[outputPos+39] = (input[startPos] >>> 20) & 1;
-        output[outputPos+40] = (input[startPos] >>> 19) & 1;
-        output[outputPos+41] = (input[startPos] >>> 18) & 1;
-        output[outputPos+42] = (input[startPos] >>> 17) & 1;
-        output[outputPos+43] = (input[startPos] >>> 16) & 1;
-        output[outputPos+44] = (input[startPos] >>> 15) & 1;
-        output[outputPos+45] = (input[startPos] >>> 14) & 1;
-        output[outputPos+46] = (input[startPos] >>> 13) & 1;
-        output[outputPos+47] = (input[startPos] >>> 12) & 1;
-        output[outputPos+48] = (input[startPos] >>> 11) & 1;
-        output[outputPos+49] = (input[startPos] >>> 10) & 1;
-        output[outputPos+50] = (input[startPos] >>> 9) & 1;
-        output[outputPos+51] = (input[startPos] >>> 8) & 1;
-        output[outputPos+52] = (input[startPos] >>> 7) & 1;
-        output[outputPos+53] = (input[startPos] >>> 6) & 1;
-        output[outputPos+54] = (input[startPos] >>> 5) & 1;
-        output[outputPos+55] = (input[startPos] >>> 4) & 1;
-        output[outputPos+56] = (input[startPos] >>> 3) & 1;
-        output[outputPos+57] = (input[startPos] >>> 2) & 1;
-        output[outputPos+58] = (input[startPos] >>> 1) & 1;
-        output[outputPos+59] = input[startPos] & 1;
-    }
-
-    private static void decode3(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] = (input[startPos] >>> 58) & 3;
-        output[outputPos+1] = (input[startPos] >>> 56) & 3;
-        output[outputPos+2] = (input[startPos] >>> 54) & 3;
-        output[outputPos+3] = (input[startPos] >>> 52) & 3;
-        output[outputPos+4] = (input[startPos] >>> 50) & 3;
-        output[outputPos+5] = (input[startPos] >>> 48) & 3;
-        output[outputPos+6] = (input[startPos] >>> 46) & 3;
-        output[outputPos+7] = (input[startPos] >>> 44) & 3;
-        output[outputPos+8] = (input[startPos] >>> 42) & 3;
-        output[outputPos+9] = (input[startPos] >>> 40) & 3;
-        output[outputPos+10] = (input[startPos] >>> 38) & 3;
-        output[outputPos+11] = (input[startPos] >>> 36) & 3;
-        output[outputPos+12] = (input[startPos] >>> 34) & 3;
-        output[outputPos+13] = (input[startPos] >>> 32) & 3;
-        output[outputPos+14] = (input[startPos] >>> 30) & 3;
-        output[outputPos+15] = (input[startPos] >>> 28) & 3;
-        output[outputPos+16] = (input[startPos] >>> 26) & 3;
-        output[outputPos+17] = (input[startPos] >>> 24) & 3;
-        output[outputPos+18] = (input[startPos] >>> 22) & 3;
-        output[outputPos+19] = (input[startPos] >>> 20) & 3;
-        output[outputPos+20] = (input[startPos] >>> 18) & 3;
-        output[outputPos+21] = (input[startPos] >>> 16) & 3;
-        output[outputPos+22] = (input[startPos] >>> 14) & 3;
-        output[outputPos+23] = (input[startPos] >>> 12) & 3;
-        output[outputPos+24] = (input[startPos] >>> 10) & 3;
-        output[outputPos+25] = (input[startPos] >>> 8) & 3;
-        output[outputPos+26] = (input[startPos] >>> 6) & 3;
-        output[outputPos+27] = (input[startPos] >>> 4) & 3;
-        output[outputPos+28] = (input[startPos] >>> 2) & 3;
-        output[outputPos+29] = input[startPos] & 3;
-    }
-
-    private static void decode4(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] = (input[startPos] >>> 57) & 7;
-        output[outputPos+1] = (input[startPos] >>> 54) & 7;
-        output[outputPos+2] = (input[startPos] >>> 51) & 7;
-        output[outputPos+3] = (input[startPos] >>> 48) & 7;
-        output[outputPos+4] = (input[startPos] >>> 45) & 7;
-        output[outputPos+5] = (input[startPos] >>> 42) & 7;
-        output[outputPos+6] = (input[startPos] >>> 39) & 7;
-        output[outputPos+7] = (input[startPos] >>> 36) & 7;
-        output[outputPos+8] = (input[startPos] >>> 33) & 7;
-        output[outputPos+9] = (input[startPos] >>> 30) & 7;
-        output[outputPos+10] = (input[startPos] >>> 27) & 7;
-        output[outputPos+11] = (input[startPos] >>> 24) & 7;
-        output[outputPos+12] = (input[startPos] >>> 21) & 7;
-        output[outputPos+13] = (input[startPos] >>> 18) & 7;
-        output[outputPos+14] = (input[startPos] >>> 15) & 7;
-        output[outputPos+15] = (input[startPos] >>> 12) & 7;
-        output[outputPos+16] = (input[startPos] >>> 9) & 7;
-        output[outputPos+17] = (input[startPos] >>> 6) & 7;
-        output[outputPos+18] = (input[startPos] >>> 3) & 7;
-        output[outputPos+19] = input[startPos] & 7;
-    }
-
-    private static void decode5(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] = (input[startPos] >>> 56) & 15;
-        output[outputPos+1] = (input[startPos] >>> 52) & 15;
-        output[outputPos+2] = (input[startPos] >>> 48) & 15;
-        output[outputPos+3] = (input[startPos] >>> 44) & 15;
-        output[outputPos+4] = (input[startPos] >>> 40) & 15;
-        output[outputPos+5] = (input[startPos] >>> 36) & 15;
-        output[outputPos+6] = (input[startPos] >>> 32) & 15;
-        output[outputPos+7] = (input[startPos] >>> 28) & 15;
-        output[outputPos+8] = (input[startPos] >>> 24) & 15;
-        output[outputPos+9] = (input[startPos] >>> 20) & 15;
-        output[outputPos+10] = (input[startPos] >>> 16) & 15;
-        output[outputPos+11] = (input[startPos] >>> 12) & 15;
-        output[outputPos+12] = (input[startPos] >>> 8) & 15;
-        output[outputPos+13] = (input[startPos] >>> 4) & 15;
-        output[outputPos+14] = input[startPos] & 15;
-    }
-
-    private static void decode6(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] = (input[startPos] >>> 55) & 31;
-        output[outputPos+1] = (input[startPos] >>> 50) & 31;
-        output[outputPos+2] = (input[startPos] >>> 45) & 31;
-        output[outputPos+3] = (input[startPos] >>> 40) & 31;
-        output[outputPos+4] = (input[startPos] >>> 35) & 31;
-        output[outputPos+5] = (input[startPos] >>> 30) & 31;
-        output[outputPos+6] = (input[startPos] >>> 25) & 31;
-        output[outputPos+7] = (input[startPos] >>> 20) & 31;
-        output[outputPos+8] = (input[startPos] >>> 15) & 31;
-        output[outputPos+9] = (input[startPos] >>> 10) & 31;
-        output[outputPos+10] = (input[startPos] >>> 5) & 31;
-        output[outputPos+11] = input[startPos] & 31;
-    }
-
-    private static void decode7(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] = (input[startPos] >>> 54) & 63;
-        output[outputPos+1] = (input[startPos] >>> 48) & 63;
-        output[outputPos+2] = (input[startPos] >>> 42) & 63;
-        output[outputPos+3] = (input[startPos] >>> 36) & 63;
-        output[outputPos+4] = (input[startPos] >>> 30) & 63;
-        output[outputPos+5] = (input[startPos] >>> 24) & 63;
-        output[outputPos+6] = (input[startPos] >>> 18) & 63;
-        output[outputPos+7] = (input[startPos] >>> 12) & 63;
-        output[outputPos+8] = (input[startPos] >>> 6) & 63;
-        output[outputPos+9] = input[startPos] & 63;
-    }
-
-     private static void decode8(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] = (input[startPos] >>> 49) & 127;
-        output[outputPos+1] = (input[startPos] >>> 42) & 127;
-        output[outputPos+2] = (input[startPos] >>> 35) & 127;
-        output[outputPos+3] = (input[startPos] >>> 28) & 127;
-        output[outputPos+4] = (input[startPos] >>> 21) & 127;
-        output[outputPos+5] = (input[startPos] >>> 14) & 127;
-        output[outputPos+6] = (input[startPos] >>> 7) & 127;
-        output[outputPos+7] = input[startPos] & 127;
-    }
-
-    private static void decode9(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] = (input[startPos] >>> 48) & 255;
-        output[outputPos+1] = (input[startPos] >>> 40) & 255;
-        output[outputPos+2] = (input[startPos] >>> 32) & 255;
-        output[outputPos+3] = (input[startPos] >>> 24) & 255;
-        output[outputPos+4] = (input[startPos] >>> 16) & 255;
-        output[outputPos+5] = (input[startPos] >>> 8) & 255;
-        output[outputPos+6] = input[startPos] & 255;
-    }
-
-    private static void decode10(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] = (input[startPos] >>> 50) & 1023;
-        output[outputPos+1] = (input[startPos] >>> 40) & 1023;
-        output[outputPos+2] = (input[startPos] >>> 30) & 1023;
-        output[outputPos+3] = (input[startPos] >>> 20) & 1023;
-        output[outputPos+4] = (input[startPos] >>> 10) & 1023;
-        output[outputPos+5] = input[startPos] & 1023;
-    }
-
-    private static void decode11(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] = (input[startPos] >>> 48) & 4095;
-        output[outputPos+1] = (input[startPos] >>> 36) & 4095;
-        output[outputPos+2] = (input[startPos] >>> 24) & 4095;
-        output[outputPos+3] = (input[startPos] >>> 12) & 4095;
-        output[outputPos+4] = input[startPos] & 4095;
-    }
-
-    private static void decode12(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] = (input[startPos] >>> 45) & 32767;
-        output[outputPos+1] = (input[startPos] >>> 30) & 32767;
-        output[outputPos+2] = (input[startPos] >>> 15) & 32767;
-        output[outputPos+3] = input[startPos] & 32767;
+    /**
+     * Concatenate two compressed streams without decoding them. Only the last word of the first stream and the
+     * first word of the second are decoded, and replaced with a single word if their values fit in one.
+     * The output may be the first array at the same position, which appends the second stream in place.
+     *
+     * @param first        Compressed words of the first stream
+     * @param firstPos     Starting position of the first stream
+     * @param firstAmount  Amount of words in the first stream
+     * @param second       Compressed words of the second stream
+     * @param secondPos    Starting position of the second stream
+     * @param secondAmount Amount of words in the second stream
+     * @param output       Output array, needs space for firstAmount + secondAmount words
+     * @param outputPos    Starting position of the output
+     * @return Amount of words written
+     */
+    public static int concat(long[] first, int firstPos, int firstAmount, long[] second, int secondPos,
+                             int secondAmount, long[] output, int outputPos) {
+        return WordStreams.concat(Codec.SIMPLE8, first, firstPos, firstAmount, second, secondPos, secondAmount,
+                output, outputPos);
     }
 
-    private static void decode13(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] = (input[startPos] >>> 40) & 1048575;
-        output[outputPos+1] = (input[startPos] >>> 20) & 1048575;
-        output[outputPos+2] = input[startPos] & 1048575;
+    /**
+     * Compress the values in positions [fromValue, toValue) of a compressed stream. Words fully inside the range
+     * are copied, only the words on the edges of the range are decoded and encoded again.
+     *
+     * @param input     Compressed words
+     * @param inputPos  Starting position of the words
+     * @param amount    Amount of words
+     * @param fromValue Index of the first value, inclusive
+     * @param toValue   Index of the last value, exclusive
+     * @param output    Output array, needs space for amount + 16 words
+     * @param outputPos Starting position of the output
+     * @return Amount of words written
+     */
+    public static int slice(long[] input, int inputPos, int amount, int fromValue, int toValue, long[] output,
+                            int outputPos) {
+        return WordStreams.slice(Codec.SIMPLE8, input, inputPos, amount, fromValue, toValue, output, outputPos);
     }
 
-    private static void decode14(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] = (input[startPos] >>> 30) & 1073741823;
-        output[outputPos+1] = input[startPos] & 1073741823;
+    /**
+     * Append values to compressed words in place. Only the last two words, which may be under-filled by the end of
+     * the previous input, are decoded and encoded again together with the new values, so the cost depends on the
+     * amount of new values and not on the length of the compressed data.
+     *
+     * @param words     Compressed words, the array needs space for the appended words
+     * @param wordPos   Starting position of the words
+     * @param wordCount Amount of words
+     * @param values    Values to append
+     * @param valuesPos Starting position of the values
+     * @param amount    How many values to append
+     * @return New amount of words
+     * @throws IllegalArgumentException if the words array is too small, the words are not modified in that case
+     */
+    public static int appendCompressed(long[] words, int wordPos, int wordCount, long[] values, int valuesPos,
+                                       int amount) {
+        return WordStreams.append(Codec.SIMPLE8, words, wordPos, wordCount, values, valuesPos, amount);
     }
 
-    private static void decode15(final long[] input, int startPos, final long[] output, int outputPos) {
-        output[outputPos] = input[startPos] & 1152921504606846975L;
+    /**
+     * Stream the values of compressed words without decompressing them to an array first. The stream can be
+     * parallelized, it is split at word boundaries.
+     *
+     * @param input    Compressed words
+     * @param inputPos Starting position of the words
+     * @param amount   How many words to decode
+     * @return Stream of the decoded values
+     */
+    public static LongStream stream(long[] input, int inputPos, int amount) {
+        return StreamSupport.longStream(new Simple8Spliterator(Codec.SIMPLE8, input, inputPos, amount), false);
     }
 }
-
-
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Reusable scratch buffers for block based compression and decompression.
+ *
+ * A context is not thread-safe. Use {@link #current()} for a context confined to the calling thread or a
+ * {@link Pool} to share a bounded amount of contexts between threads. The buffers grow to the largest requested size
+ * and are reused afterwards, which keeps steady state compression free of allocations. Requests larger than
+ * {@link #MAX_RETAINED_LENGTH} are served with temporary arrays to avoid pinning large buffers.
+ *
+ * The returned buffers are valid until the next call to the same context. The library itself never uses the context
+ * returned by {@link #current()}, so calling other library methods does not overwrite them.
+ *
+ * @author Michael Burman
+ */
+public final class Simple8Context {
+
+    public static final int MAX_RETAINED_LENGTH = 1 << 20;
+
+    private static final long[] EMPTY = new long[0];
+
+    private static final ThreadLocal<Simple8Context> CURRENT = ThreadLocal.withInitial(Simple8Context::new);
+    private static final ThreadLocal<Simple8Context> INTERNAL = ThreadLocal.withInitial(Simple8Context::new);
+
+    private long[] values = EMPTY;
+    private long[] words = EMPTY;
+    private int dirtyWords = 0;
+    private long[] compressed = EMPTY;
+
+    /**
+     * @return Context confined to the calling thread, reserved for the caller's own use
+     */
+    public static Simple8Context current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return Context confined to the calling thread for the library's own scratch buffers. Its buffers may be
+     * overwritten by any library call, so they must not be held across one.
+     */
+    static Simple8Context internal() {
+        return INTERNAL.get();
+    }
+
+    /**
+     * @param length Required length
+     * @return Scratch array for values with undefined content, valid until the next call to this context
+     */
+    public long[] values(int length) {
+        if(values.length >= length) {
+            return values;
+        }
+        long[] buffer = new long[capacityFor(length)];
+        if(buffer.length <= MAX_RETAINED_LENGTH) {
+            values = buffer;
+        }
+        return buffer;
+    }
+
+    /**
+     * @param length Required length
+     * @return Zeroed scratch array suitable as the output of compress, valid until the next call to this context
+     */
+    public long[] words(int length) {
+        if(words.length >= length) {
+            Arrays.fill(words, 0, Math.min(dirtyWords, words.length), 0);
+            dirtyWords = length;
+            return words;
+        }
+        long[] buffer = new long[capacityFor(length)];
+        if(buffer.length <= MAX_RETAINED_LENGTH) {
+            words = buffer;
+            dirtyWords = length;
+        }
+        return buffer;
+    }
+
+    /**
+     * Compress values to the scratch buffer available from {@link #compressed()}
+     *
+     * @param codec    Compression method
+     * @param input    Values to be compressed
+     * @param inputPos Starting position of the input to compress
+     * @param amount   How many values to compress from input
+     * @return Amount of words written
+     */
+    public int compress(Codec codec, long[] input, int inputPos, int amount) {
+        compressed = words(amount);
+        return codec.compress(input, inputPos, amount, compressed, 0);
+    }
+
+    /**
+     * @return Words written by the last call to {@link #compress(Codec, long[], int, int)}, valid until the next call
+     * to this context
+     */
+    public long[] compressed() {
+        return compressed;
+    }
+
+    /**
+     * Compress values to a new array of exact size
+     *
+     * @param codec    Compression method
+     * @param input    Values to be compressed
+     * @param inputPos Starting position of the input to compress
+     * @param amount   How many values to compress from input
+     * @return Compressed words
+     */
+    public long[] compressToArray(Codec codec, long[] input, int inputPos, int amount) {
+        int count = compress(codec, input, inputPos, amount);
+        return Arrays.copyOf(compressed, count);
+    }
+
+    /**
+     * Decompress words to the values scratch buffer
+     *
+     * @param codec      Compression method
+     * @param input      Compressed words
+     * @param inputPos   Starting position of the words
+     * @param amount     How many words to decompress
+     * @param valueCount Amount of values the words decode to
+     * @return Scratch array holding the decoded values in positions [0, valueCount), the same array as returned by
+     * {@link #values(int)} and valid until the next call to this context
+     */
+    public long[] decompress(Codec codec, long[] input, int inputPos, int amount, int valueCount) {
+        long[] output = values(valueCount);
+        codec.decompress(input, inputPos, amount, output, 0);
+        return output;
+    }
+
+    private static int capacityFor(int length) {
+        if(length > (1 << 30)) {
+            return length;
+        }
+        return Math.max(64, Integer.highestOneBit(length - 1) << 1);
+    }
+
+    /**
+     * Bounded lock-free pool of contexts for code that can not rely on thread confinement, such as tasks that hop
+     * between threads. Contexts beyond the pool size are created on demand and dropped on release.
+     */
+    public static final class Pool {
+        private final AtomicReferenceArray<Simple8Context> slots;
+
+        public Pool(int size) {
+            slots = new AtomicReferenceArray<>(size);
+        }
+
+        public Simple8Context acquire() {
+            for(int i = 0; i < slots.length(); i++) {
+                Simple8Context context = slots.get(i);
+                if(context != null && slots.compareAndSet(i, context, null)) {
+                    return context;
+                }
+            }
+            return new Simple8Context();
+        }
+
+        public void release(Simple8Context context) {
+            for(int i = 0; i < slots.length(); i++) {
+                if(slots.get(i) == null && slots.compareAndSet(i, null, context)) {
+                    return;
+                }
+            }
+        }
+    }
+}
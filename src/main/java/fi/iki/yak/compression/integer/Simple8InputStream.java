@@ -0,0 +1,194 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads values written by {@link Simple8OutputStream}. Blocks are read with a single read call each and decoded one
+ * at a time, so the memory use is bounded by the block size of the stream. Not thread-safe.
+ *
+ * @author Michael Burman
+ */
+public class Simple8InputStream implements Closeable {
+
+    private final InputStream in;
+    private final ReadableByteChannel channel;
+
+    private Codec codec;
+    private int blockSize;
+    private ByteBuffer frame;
+    private long[] words;
+    private long[] block;
+    private int blockValues = 0;
+    private int position = 0;
+    private boolean endOfStream = false;
+    private boolean closed = false;
+
+    public Simple8InputStream(InputStream in) {
+        this.in = in;
+        this.channel = null;
+    }
+
+    public Simple8InputStream(ReadableByteChannel channel) {
+        this.in = null;
+        this.channel = channel;
+    }
+
+    /**
+     * @return Codec used by the writer of the stream
+     */
+    public Codec codec() throws IOException {
+        ensureHeader();
+        return codec;
+    }
+
+    /**
+     * @return true if more values are available
+     */
+    public boolean hasNext() throws IOException {
+        return position < blockValues || nextBlock();
+    }
+
+    /**
+     * @return Next value
+     * @throws EOFException if the end of the stream has been reached
+     */
+    public long readLong() throws IOException {
+        if(!hasNext()) {
+            throw new EOFException();
+        }
+        return block[position++];
+    }
+
+    /**
+     * Read values to the given array
+     *
+     * @param values Destination array
+     * @param pos    Starting position in the destination
+     * @param amount Maximum amount of values to read
+     * @return Amount of values read, or -1 if the end of the stream has been reached
+     */
+    public int read(long[] values, int pos, int amount) throws IOException {
+        if(amount == 0) {
+            return 0;
+        }
+        int read = 0;
+        while(read < amount && hasNext()) {
+            int copied = Math.min(amount - read, blockValues - position);
+            System.arraycopy(block, position, values, pos + read, copied);
+            position += copied;
+            read += copied;
+        }
+        return read == 0 ? -1 : read;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        if(in != null) {
+            in.close();
+        } else {
+            channel.close();
+        }
+    }
+
+    private void ensureHeader() throws IOException {
+        if(closed) {
+            throw new IOException("Stream has been closed");
+        }
+        if(codec != null) {
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(BlockFraming.HEADER_BYTES);
+        if(!readFully(header)) {
+            throw new EOFException("Missing stream header");
+        }
+        header.flip();
+        BlockFraming.Header parsed = BlockFraming.readHeader(header, BlockFraming.STREAM_MAGIC);
+        codec = parsed.codec;
+        blockSize = parsed.blockSize;
+        frame = ByteBuffer.allocate(BlockFraming.maxFrameBytes(blockSize));
+        words = new long[blockSize];
+        block = new long[blockSize];
+    }
+
+    private boolean nextBlock() throws IOException {
+        ensureHeader();
+        while(!endOfStream) {
+            frame.clear();
+            frame.limit(BlockFraming.FRAME_HEADER_BYTES);
+            if(!readFully(frame)) {
+                endOfStream = true;
+                return false;
+            }
+            int valueCount = frame.getInt(0);
+            int wordCount = frame.getInt(4);
+            BlockFraming.validateFrame(valueCount, wordCount, blockSize);
+
+            frame.clear();
+            frame.limit(wordCount * Long.BYTES);
+            if(!readFully(frame)) {
+                throw new EOFException("Truncated block frame");
+            }
+            frame.flip();
+            BlockFraming.readWords(frame, words, wordCount);
+            codec.decompress(words, 0, wordCount, block, 0);
+            blockValues = valueCount;
+            position = 0;
+            if(valueCount > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Fill the remaining space of the buffer
+     *
+     * @return false if the stream ended before any bytes were read
+     * @throws EOFException if the stream ended after some bytes were read
+     */
+    private boolean readFully(ByteBuffer buffer) throws IOException {
+        int start = buffer.position();
+        while(buffer.hasRemaining()) {
+            int read;
+            if(in != null) {
+                read = in.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                if(read > 0) {
+                    buffer.position(buffer.position() + read);
+                }
+            } else {
+                read = channel.read(buffer);
+            }
+            if(read < 0) {
+                if(buffer.position() == start) {
+                    return false;
+                }
+                throw new EOFException("Unexpected end of stream");
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes a sequence of values as compressed blocks to an {@link OutputStream} or a {@link WritableByteChannel}.
+ *
+ * Values are buffered until a full block is available, which is then compressed and written with a single write
+ * call. The stream starts with a header (magic, version, codec id and block size) and every block is framed with its
+ * value and word counts, see {@link Simple8InputStream} for reading. Not thread-safe.
+ *
+ * @author Michael Burman
+ */
+public class Simple8OutputStream implements Closeable, Flushable {
+
+    public static final int DEFAULT_BLOCK_SIZE = 8192;
+
+    private final OutputStream out;
+    private final WritableByteChannel channel;
+    private final Codec codec;
+    private final long[] block;
+    private final ByteBuffer frame;
+    private int blockValues = 0;
+    private boolean headerWritten = false;
+    private boolean closed = false;
+
+    public Simple8OutputStream(OutputStream out, Codec codec) {
+        this(out, null, codec, DEFAULT_BLOCK_SIZE);
+    }
+
+    public Simple8OutputStream(OutputStream out, Codec codec, int blockSize) {
+        this(out, null, codec, blockSize);
+    }
+
+    public Simple8OutputStream(WritableByteChannel channel, Codec codec) {
+        this(null, channel, codec, DEFAULT_BLOCK_SIZE);
+    }
+
+    public Simple8OutputStream(WritableByteChannel channel, Codec codec, int blockSize) {
+        this(null, channel, codec, blockSize);
+    }
+
+    private Simple8OutputStream(OutputStream out, WritableByteChannel channel, Codec codec, int blockSize) {
+        if(blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive, was " + blockSize);
+        }
+        this.out = out;
+        this.channel = channel;
+        this.codec = codec;
+        this.block = new long[blockSize];
+        this.frame = ByteBuffer.allocate(BlockFraming.HEADER_BYTES + BlockFraming.maxFrameBytes(blockSize));
+    }
+
+    /**
+     * @throws IllegalArgumentException If the value does not fit in 60 bits, nothing is written then
+     */
+    public void writeLong(long value) throws IOException {
+        ensureOpen();
+        checkValue(value);
+        block[blockValues++] = value;
+        if(blockValues == block.length) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException If any of the values does not fit in 60 bits, none of them is written then
+     */
+    public void write(long[] values, int pos, int amount) throws IOException {
+        ensureOpen();
+        for(int i = pos; i < pos + amount; i++) {
+            checkValue(values[i]);
+        }
+        while(amount > 0) {
+            int copied = Math.min(amount, block.length - blockValues);
+            System.arraycopy(values, pos, block, blockValues, copied);
+            blockValues += copied;
+            pos += copied;
+            amount -= copied;
+            if(blockValues == block.length) {
+                writeBlock();
+            }
+        }
+    }
+
+    /**
+     * Write the buffered values as a (possibly partial) block and flush the underlying stream
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if(blockValues > 0 || !headerWritten) {
+            writeBlock();
+        }
+        if(out != null) {
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            if(out != null) {
+                out.close();
+            } else {
+                channel.close();
+            }
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        frame.clear();
+        if(!headerWritten) {
+            BlockFraming.writeHeader(frame, BlockFraming.STREAM_MAGIC, codec, block.length);
+        }
+        if(blockValues > 0) {
+            Simple8Context context = Simple8Context.internal();
+            int words = context.compress(codec, block, 0, blockValues);
+            BlockFraming.writeFrame(frame, blockValues, context.compressed(), words);
+        }
+        frame.flip();
+        if(out != null) {
+            out.write(frame.array(), 0, frame.limit());
+        } else {
+            while(frame.hasRemaining()) {
+                channel.write(frame);
+            }
+        }
+        // Only after a successful write, so that a failed block is written again with the header by the next flush
+        headerWritten = true;
+        blockValues = 0;
+    }
+
+    private static void checkValue(long value) {
+        if(Simple8.bits(value) > 60) {
+            throw new IllegalArgumentException("Value " + value + " does not fit in 60 bits");
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if(closed) {
+            throw new IOException("Stream has been closed");
+        }
+    }
+}
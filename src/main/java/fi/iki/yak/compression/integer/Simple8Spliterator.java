@@ -0,0 +1,209 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+
+/**
+ * Spliterator that decodes compressed words lazily.
+ *
+ * The value count of every word is collected to a prefix sum when the spliterator is created, which gives exact
+ * sizes for every split and allows splitting at the word boundary closest to the middle value. This makes parallel
+ * streams over compressed data balanced even when the word value counts vary greatly, as with RLE words.
+ *
+ * @author Michael Burman
+ */
+public final class Simple8Spliterator implements Spliterator.OfLong {
+
+    private static final int MAX_WORD_VALUES = 240;
+    private static final int MIN_SPLIT_WORDS = 64;
+
+    private final Codec codec;
+    private final long[] words;
+    private final long[] prefix; // Values before each word, relative to the first word of the root spliterator
+    private final int base;
+    private final int wordEnd;
+
+    private int wordPos;
+    private int inWord;
+    private long[] buffer;
+
+    /**
+     * @param codec  Codec used to compress the words
+     * @param words  Compressed words
+     * @param pos    Starting position of the words
+     * @param amount How many words to decode
+     */
+    public Simple8Spliterator(Codec codec, long[] words, int pos, int amount) {
+        this.codec = codec;
+        this.words = words;
+        this.base = pos;
+        long[] prefix = new long[amount + 1];
+        int end = pos;
+        for(int endPos = pos + amount; end < endPos && !codec.isEndOfStream(words[end]); end++) {
+            prefix[end - pos + 1] = prefix[end - pos] + codec.valueCount(words[end]);
+        }
+        this.prefix = prefix;
+        this.wordEnd = end;
+        this.wordPos = pos;
+        this.inWord = 0;
+    }
+
+    private Simple8Spliterator(Codec codec, long[] words, long[] prefix, int base, int wordPos, int inWord,
+                               int wordEnd) {
+        this.codec = codec;
+        this.words = words;
+        this.prefix = prefix;
+        this.base = base;
+        this.wordPos = wordPos;
+        this.inWord = inWord;
+        this.wordEnd = wordEnd;
+    }
+
+    @Override
+    public boolean tryAdvance(LongConsumer action) {
+        if(wordPos >= wordEnd) {
+            return false;
+        }
+        long word = words[wordPos];
+        action.accept(codec.valueAt(word, inWord));
+        if(++inWord == codec.valueCount(word)) {
+            inWord = 0;
+            wordPos++;
+        }
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(LongConsumer action) {
+        for(; wordPos < wordEnd; wordPos++, inWord = 0) {
+            long word = words[wordPos];
+            int count = codec.valueCount(word);
+            if(count > MAX_WORD_VALUES) {
+                long value = codec.valueAt(word, 0);
+                for(int i = inWord; i < count; i++) {
+                    action.accept(value);
+                }
+            } else {
+                long[] decoded = buffer();
+                codec.decompressWords(words, wordPos, 1, decoded, 0);
+                for(int i = inWord; i < count; i++) {
+                    action.accept(decoded[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Decode the following values to an array
+     *
+     * @param output    Destination array
+     * @param outputPos Starting position in the destination
+     * @param amount    Maximum amount of values to decode
+     * @return Amount of values decoded, 0 if no values remain
+     */
+    int read(long[] output, int outputPos, int amount) {
+        int read = 0;
+        while(read < amount && wordPos < wordEnd) {
+            long word = words[wordPos];
+            int count = codec.valueCount(word);
+            int taken = Math.min(count - inWord, amount - read);
+            if(count > MAX_WORD_VALUES) {
+                long value = codec.valueAt(word, 0);
+                for(int i = 0; i < taken; i++) {
+                    output[outputPos + read + i] = value;
+                }
+            } else if(inWord == 0 && taken == count) {
+                codec.decompressWords(words, wordPos, 1, output, outputPos + read);
+            } else {
+                long[] decoded = buffer();
+                codec.decompressWords(words, wordPos, 1, decoded, 0);
+                System.arraycopy(decoded, inWord, output, outputPos + read, taken);
+            }
+            read += taken;
+            inWord += taken;
+            if(inWord == count) {
+                inWord = 0;
+                wordPos++;
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Skip the following values without decoding them
+     *
+     * @param amount Amount of values to skip
+     * @return Amount of values skipped
+     */
+    long skip(long amount) {
+        long skipped = 0;
+        while(skipped < amount && wordPos < wordEnd) {
+            int remaining = codec.valueCount(words[wordPos]) - inWord;
+            if(remaining <= amount - skipped) {
+                skipped += remaining;
+                inWord = 0;
+                wordPos++;
+            } else {
+                inWord += (int) (amount - skipped);
+                skipped = amount;
+            }
+        }
+        return skipped;
+    }
+
+    @Override
+    public Spliterator.OfLong trySplit() {
+        if(wordEnd - wordPos < MIN_SPLIT_WORDS) {
+            return null;
+        }
+        long middle = (prefix[wordPos - base] + inWord + prefix[wordEnd - base]) >>> 1;
+
+        // Find the first word boundary at or after the middle value
+        int low = wordPos + 1;
+        int high = wordEnd - 1;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(prefix[mid - base] < middle) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        Simple8Spliterator prefixPart = new Simple8Spliterator(codec, words, prefix, base, wordPos, inWord, low);
+        wordPos = low;
+        inWord = 0;
+        return prefixPart;
+    }
+
+    @Override
+    public long estimateSize() {
+        return prefix[wordEnd - base] - prefix[wordPos - base] - inWord;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL;
+    }
+
+    private long[] buffer() {
+        if(buffer == null) {
+            buffer = new long[MAX_WORD_VALUES];
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+/**
+ * Compressed chunk of (timestamp, value) points of a single time series.
+ *
+ * Timestamps are stored as zigzag encoded delta-of-deltas compressed with {@link Simple8RLE}, so regular intervals
+ * turn into runs of zeros. Long values are stored as zigzag encoded deltas compressed with {@link Simple8RLE} and
+ * double values with {@link DoubleXorCodec}. The first and last timestamps are in the header, which lets readers
+ * skip chunks outside a queried time range without decoding anything.
+ *
+ * Layout:
+ * <pre>
+ * word 0    point count (high 32 bits), value type (low 32 bits)
+ * word 1    first timestamp
+ * word 2    last timestamp
+ * word 3    timestamp word count (high 32 bits), value word count (low 32 bits)
+ * word 4    first value of a long chunk
+ *           timestamp words, value words
+ * </pre>
+ *
+ * Timestamps must be in ascending order. The delta-of-deltas and the value deltas must fit in 59 bits.
+ *
+ * @author Michael Burman
+ */
+public final class TimeSeriesChunk {
+
+    public enum ValueType {
+        LONG,
+        DOUBLE
+    }
+
+    private static final int HEADER_WORDS = 5;
+    private static final int BATCH = 256;
+
+    private final long[] words;
+    private final int size;
+    private final ValueType valueType;
+    private final int timestampWords;
+    private final int valueWords;
+
+    private TimeSeriesChunk(long[] words) {
+        if(words.length < HEADER_WORDS) {
+            throw new IllegalArgumentException("Chunk must have at least " + HEADER_WORDS + " words");
+        }
+        int type = (int) words[0];
+        if(type < 0 || type >= ValueType.values().length) {
+            throw new IllegalArgumentException("Unknown value type " + type);
+        }
+        this.words = words;
+        this.size = (int) (words[0] >>> 32);
+        this.valueType = ValueType.values()[type];
+        this.timestampWords = (int) (words[3] >>> 32);
+        this.valueWords = (int) words[3];
+        if((long) HEADER_WORDS + timestampWords + valueWords != words.length) {
+            throw new IllegalArgumentException("Chunk length does not match the header");
+        }
+    }
+
+    /**
+     * @param words Words returned by {@link #words()}
+     */
+    public static TimeSeriesChunk wrap(long[] words) {
+        return new TimeSeriesChunk(words);
+    }
+
+    /**
+     * Compress points with long values
+     *
+     * @param timestamps Timestamps in ascending order
+     * @param values     Values of the points
+     * @param pos        Starting position in both arrays
+     * @param amount     Amount of points
+     */
+    public static TimeSeriesChunk encode(long[] timestamps, long[] values, int pos, int amount) {
+        // The values are fully consumed before the timestamps reuse the scratch buffer
+        Simple8Context context = Simple8Context.internal();
+        long[] deltas = context.values(amount);
+        for(int i = 1; i < amount; i++) {
+            deltas[i - 1] = zigzag(values[pos + i] - values[pos + i - 1]);
+        }
+        long first = amount > 0 ? values[pos] : 0;
+        long[] valueWords = context.compressToArray(Codec.SIMPLE8_RLE, deltas, 0, Math.max(amount - 1, 0));
+        long[] timestampWords = encodeTimestamps(context, timestamps, pos, amount);
+
+        long[] words = header(ValueType.LONG, timestamps, pos, amount, timestampWords.length, valueWords.length);
+        words[4] = first;
+        System.arraycopy(timestampWords, 0, words, HEADER_WORDS, timestampWords.length);
+        System.arraycopy(valueWords, 0, words, HEADER_WORDS + timestampWords.length, valueWords.length);
+        return new TimeSeriesChunk(words);
+    }
+
+    /**
+     * Compress points with double values
+     *
+     * @param timestamps Timestamps in ascending order
+     * @param values     Values of the points
+     * @param pos        Starting position in both arrays
+     * @param amount     Amount of points
+     */
+    public static TimeSeriesChunk encode(long[] timestamps, double[] values, int pos, int amount) {
+        long[] timestampWords = encodeTimestamps(Simple8Context.internal(), timestamps, pos, amount);
+        long[] valueWords = new long[DoubleXorCodec.maxCompressedLength(amount)];
+        int valueCount = DoubleXorCodec.compress(values, pos, amount, valueWords, 0);
+
+        long[] words = header(ValueType.DOUBLE, timestamps, pos, amount, timestampWords.length, valueCount);
+        System.arraycopy(timestampWords, 0, words, HEADER_WORDS, timestampWords.length);
+        System.arraycopy(valueWords, 0, words, HEADER_WORDS + timestampWords.length, valueCount);
+        return new TimeSeriesChunk(words);
+    }
+
+    /**
+     * @return Amount of points
+     */
+    public int size() {
+        return size;
+    }
+
+    public ValueType valueType() {
+        return valueType;
+    }
+
+    public long firstTimestamp() {
+        checkNotEmpty();
+        return words[1];
+    }
+
+    public long lastTimestamp() {
+        checkNotEmpty();
+        return words[2];
+    }
+
+    /**
+     * @return Compressed chunk including the header, for storing and {@link #wrap(long[])}
+     */
+    public long[] words() {
+        return words.clone();
+    }
+
+    public long sizeInBytes() {
+        return (long) words.length * Long.BYTES;
+    }
+
+    /**
+     * @param output    Destination array, needs space for {@link #size()} values
+     * @param outputPos Starting position in the destination
+     */
+    public void decodeTimestamps(long[] output, int outputPos) {
+        if(size == 0) {
+            return;
+        }
+        long[] dods = Simple8Context.internal().decompress(Codec.SIMPLE8_RLE, words, HEADER_WORDS, timestampWords,
+                size - 1);
+        long timestamp = words[1];
+        long delta = 0;
+        output[outputPos] = timestamp;
+        for(int i = 1; i < size; i++) {
+            delta += unzigzag(dods[i - 1]);
+            timestamp += delta;
+            output[outputPos + i] = timestamp;
+        }
+    }
+
+    /**
+     * @param output    Destination array, needs space for {@link #size()} values
+     * @param outputPos Starting position in the destination
+     */
+    public void decodeValues(long[] output, int outputPos) {
+        checkType(ValueType.LONG);
+        if(size == 0) {
+            return;
+        }
+        long[] deltas = Simple8Context.internal().decompress(Codec.SIMPLE8_RLE, words,
+                HEADER_WORDS + timestampWords, valueWords, size - 1);
+        long value = words[4];
+        output[outputPos] = value;
+        for(int i = 1; i < size; i++) {
+            value += unzigzag(deltas[i - 1]);
+            output[outputPos + i] = value;
+        }
+    }
+
+    /**
+     * @param output    Destination array, needs space for {@link #size()} values
+     * @param outputPos Starting position in the destination
+     */
+    public void decodeValues(double[] output, int outputPos) {
+        checkType(ValueType.DOUBLE);
+        DoubleXorCodec.decompress(words, HEADER_WORDS + timestampWords, output, outputPos, 0, size);
+    }
+
+    /**
+     * Decode the points with timestamps in [from, to) of a long chunk. Decoding stops at the first timestamp past
+     * the range, and a range outside the first and last timestamps decodes nothing.
+     *
+     * @param from       Smallest timestamp, inclusive
+     * @param to         Largest timestamp, exclusive
+     * @param timestamps Destination of the timestamps
+     * @param values     Destination of the values
+     * @param outputPos  Starting position in both destinations
+     * @return Amount of points written
+     */
+    public int decodeRange(long from, long to, long[] timestamps, long[] values, int outputPos) {
+        checkType(ValueType.LONG);
+        long range = decodeTimestampRange(from, to, timestamps, outputPos);
+        int start = (int) (range >>> 32);
+        int found = (int) range;
+        if(found == 0) {
+            return 0;
+        }
+
+        Simple8Spliterator deltas = new Simple8Spliterator(Codec.SIMPLE8_RLE, words, HEADER_WORDS + timestampWords,
+                valueWords);
+        long[] batch = new long[BATCH];
+        long value = words[4];
+        if(start == 0) {
+            values[outputPos] = value;
+        }
+        for(int index = 1, end = start + found; index < end; ) {
+            int read = deltas.read(batch, 0, Math.min(BATCH, end - index));
+            for(int i = 0; i < read; i++, index++) {
+                value += unzigzag(batch[i]);
+                if(index >= start) {
+                    values[outputPos + index - start] = value;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Decode the points with timestamps in [from, to) of a double chunk. Decoding stops at the first timestamp past
+     * the range, and a range outside the first and last timestamps decodes nothing.
+     *
+     * @param from       Smallest timestamp, inclusive
+     * @param to         Largest timestamp, exclusive
+     * @param timestamps Destination of the timestamps
+     * @param values     Destination of the values
+     * @param outputPos  Starting position in both destinations
+     * @return Amount of points written
+     */
+    public int decodeRange(long from, long to, long[] timestamps, double[] values, int outputPos) {
+        checkType(ValueType.DOUBLE);
+        long range = decodeTimestampRange(from, to, timestamps, outputPos);
+        int start = (int) (range >>> 32);
+        int found = (int) range;
+        if(found > 0) {
+            DoubleXorCodec.decompress(words, HEADER_WORDS + timestampWords, values, outputPos, start, start + found);
+        }
+        return found;
+    }
+
+    /**
+     * @return First matching point (high 32 bits) and the amount of matching points (low 32 bits)
+     */
+    private long decodeTimestampRange(long from, long to, long[] output, int outputPos) {
+        if(size == 0 || from >= to || to <= words[1] || from > words[2]) {
+            return 0;
+        }
+        int start = 0;
+        int found = 0;
+        long timestamp = words[1];
+        if(timestamp >= from) {
+            output[outputPos] = timestamp;
+            found = 1;
+        }
+
+        Simple8Spliterator dods = new Simple8Spliterator(Codec.SIMPLE8_RLE, words, HEADER_WORDS, timestampWords);
+        long[] batch = new long[BATCH];
+        long delta = 0;
+        scan:
+        for(int index = 1; index < size; ) {
+            int read = dods.read(batch, 0, Math.min(BATCH, size - index));
+            for(int i = 0; i < read; i++, index++) {
+                delta += unzigzag(batch[i]);
+                timestamp += delta;
+                if(timestamp >= to) {
+                    break scan;
+                }
+                if(timestamp >= from) {
+                    if(found == 0) {
+                        start = index;
+                    }
+                    output[outputPos + found++] = timestamp;
+                }
+            }
+        }
+        return (long) start << 32 | found;
+    }
+
+    private static long[] encodeTimestamps(Simple8Context context, long[] timestamps, int pos, int amount) {
+        long[] dods = context.values(amount);
+        long previousDelta = 0;
+        for(int i = 1; i < amount; i++) {
+            long delta = timestamps[pos + i] - timestamps[pos + i - 1];
+            if(delta < 0) {
+                throw new IllegalArgumentException("Timestamps must be in ascending order, position " + (pos + i)
+                        + " is smaller than the previous one");
+            }
+            dods[i - 1] = zigzag(delta - previousDelta);
+            previousDelta = delta;
+        }
+        return context.compressToArray(Codec.SIMPLE8_RLE, dods, 0, Math.max(amount - 1, 0));
+    }
+
+    private static long[] header(ValueType type, long[] timestamps, int pos, int amount, int timestampWords,
+                                 int valueWords) {
+        long[] words = new long[HEADER_WORDS + timestampWords + valueWords];
+        words[0] = (long) amount << 32 | type.ordinal();
+        if(amount > 0) {
+            words[1] = timestamps[pos];
+            words[2] = timestamps[pos + amount - 1];
+        }
+        words[3] = (long) timestampWords << 32 | valueWords;
+        return words;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private void checkType(ValueType expected) {
+        if(valueType != expected) {
+            throw new IllegalStateException("Chunk holds " + valueType + " values");
+        }
+    }
+
+    private void checkNotEmpty() {
+        if(size == 0) {
+            throw new IllegalStateException("Chunk is empty");
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+/**
+ * Operations on compressed word streams that decode only the words they have to change. Every word decodes on its
+ * own, so the words in the middle of a stream are copied as they are.
+ *
+ * @author Michael Burman
+ */
+final class WordStreams {
+
+    private static final long RUN_COUNT_MASK = 0xFFFFFFFL << 32;
+    private static final long MAX_RUN_LENGTH = 0xFFFFFFFL;
+    private static final int APPEND_TAIL_WORDS = 2;
+
+    private WordStreams() {
+    }
+
+    /**
+     * @return Amount of words before the end-of-stream word, or amount if there is none
+     */
+    static int streamLength(Codec codec, long[] input, int inputPos, int amount) {
+        int length = 0;
+        while(length < amount && !codec.isEndOfStream(input[inputPos + length])) {
+            length++;
+        }
+        return length;
+    }
+
+    static int concat(Codec codec, long[] first, int firstPos, int firstAmount, long[] second, int secondPos,
+                      int secondAmount, long[] output, int outputPos) {
+        int firstLength = streamLength(codec, first, firstPos, firstAmount);
+        int secondLength = streamLength(codec, second, secondPos, secondAmount);
+        System.arraycopy(first, firstPos, output, outputPos, firstLength);
+        if(firstLength == 0 || secondLength == 0) {
+            System.arraycopy(second, secondPos, output, outputPos + firstLength, secondLength);
+            return firstLength + secondLength;
+        }
+
+        int boundaryPos = outputPos + firstLength - 1;
+        int boundary = join(codec, first, firstPos + firstLength - 1, second, secondPos, output, boundaryPos);
+        System.arraycopy(second, secondPos + 1, output, boundaryPos + boundary, secondLength - 1);
+        return firstLength - 1 + boundary + secondLength - 1;
+    }
+
+    static int slice(Codec codec, long[] input, int inputPos, int amount, int fromValue, int toValue,
+                     long[] output, int outputPos) {
+        if(fromValue < 0 || toValue < fromValue) {
+            throw new IndexOutOfBoundsException("Invalid value range [" + fromValue + ", " + toValue + ")");
+        }
+        if(fromValue == toValue) {
+            return 0;
+        }
+        int end = inputPos + streamLength(codec, input, inputPos, amount);
+        int word = inputPos;
+        long wordStart = 0;
+        int written = 0;
+        while(wordStart < toValue) {
+            if(word >= end) {
+                throw new IndexOutOfBoundsException("Value range [" + fromValue + ", " + toValue
+                        + ") is outside [0, " + wordStart + ")");
+            }
+            int count = codec.valueCount(input[word]);
+            if(wordStart + count > fromValue) {
+                int from = (int) Math.max(fromValue - wordStart, 0);
+                int to = (int) Math.min(toValue - wordStart, count);
+                if(from == 0 && to == count) {
+                    output[outputPos + written++] = input[word];
+                } else {
+                    written += encodePart(codec, input, word, from, to, output, outputPos + written);
+                }
+            }
+            wordStart += count;
+            word++;
+        }
+        return written;
+    }
+
+    static int append(Codec codec, long[] words, int wordPos, int wordCount, long[] values, int valuesPos,
+                      int amount) {
+        int end = wordPos + streamLength(codec, words, wordPos, wordCount);
+
+        // Values equal to a trailing run only extend its count
+        int extended = 0;
+        if(end > wordPos && isRun(codec, words[end - 1])) {
+            long run = words[end - 1];
+            long value = codec.valueAt(run, 0);
+            while(extended < amount && values[valuesPos + extended] == value
+                    && codec.valueCount(run) + extended < MAX_RUN_LENGTH) {
+                extended++;
+            }
+            valuesPos += extended;
+            amount -= extended;
+        }
+        if(amount == 0) {
+            if(extended > 0) {
+                extendRun(words, end - 1, extended);
+            }
+            return end - wordPos;
+        }
+
+        // The last words may be under-filled, encode their values again together with the new ones
+        int tailStart = end;
+        int tailValues = 0;
+        while(tailStart > wordPos && end - tailStart < APPEND_TAIL_WORDS && !isRun(codec, words[tailStart - 1])) {
+            tailStart--;
+            tailValues += codec.valueCount(words[tailStart]);
+        }
+        Simple8Context context = Simple8Context.internal();
+        long[] buffer = context.values(tailValues + amount);
+        codec.decompressWords(words, tailStart, end - tailStart, buffer, 0);
+        System.arraycopy(values, valuesPos, buffer, tailValues, amount);
+        int encoded = context.compress(codec, buffer, 0, tailValues + amount);
+        if(tailStart + encoded > words.length) {
+            throw new IllegalArgumentException("Appending needs space for " + (tailStart + encoded - wordPos)
+                    + " words after position " + wordPos + ", the array has " + (words.length - wordPos));
+        }
+        if(extended > 0) {
+            extendRun(words, end - 1, extended);
+        }
+        System.arraycopy(context.compressed(), 0, words, tailStart, encoded);
+        return tailStart + encoded - wordPos;
+    }
+
+    private static void extendRun(long[] words, int pos, int extended) {
+        long run = words[pos];
+        words[pos] = (run & ~RUN_COUNT_MASK) | (((run & RUN_COUNT_MASK) >>> 32) + extended) << 32;
+    }
+
+    /**
+     * Write the values of two adjacent words, as a single word if they fit in one
+     *
+     * @return Amount of words written, 1 or 2
+     */
+    private static int join(Codec codec, long[] first, int firstPos, long[] second, int secondPos, long[] output,
+                            int outputPos) {
+        long last = first[firstPos];
+        long next = second[secondPos];
+        int lastCount = codec.valueCount(last);
+        int nextCount = codec.valueCount(next);
+        if(isRun(codec, last) || isRun(codec, next)) {
+            if(isRun(codec, last) && isRun(codec, next) && (last & ~RUN_COUNT_MASK) == (next & ~RUN_COUNT_MASK)
+                    && lastCount + (long) nextCount <= MAX_RUN_LENGTH) {
+                output[outputPos] = (last & ~RUN_COUNT_MASK) | (long) (lastCount + nextCount) << 32;
+                return 1;
+            }
+        } else {
+            Simple8Context context = Simple8Context.internal();
+            long[] values = context.values(lastCount + nextCount);
+            codec.decompressWords(first, firstPos, 1, values, 0);
+            codec.decompressWords(second, secondPos, 1, values, lastCount);
+            if(context.compress(codec, values, 0, lastCount + nextCount) == 1) {
+                output[outputPos] = context.compressed()[0];
+                return 1;
+            }
+        }
+        output[outputPos] = last;
+        output[outputPos + 1] = next;
+        return 2;
+    }
+
+    /**
+     * Encode the values in positions [from, to) of a single word
+     *
+     * @return Amount of words written
+     */
+    private static int encodePart(Codec codec, long[] input, int inputPos, int from, int to, long[] output,
+                                  int outputPos) {
+        long word = input[inputPos];
+        if(isRun(codec, word)) {
+            output[outputPos] = (word & ~RUN_COUNT_MASK) | (long) (to - from) << 32;
+            return 1;
+        }
+        Simple8Context context = Simple8Context.internal();
+        long[] values = context.values(codec.valueCount(word));
+        codec.decompressWords(input, inputPos, 1, values, 0);
+        int words = context.compress(codec, values, from, to - from);
+        System.arraycopy(context.compressed(), 0, output, outputPos, words);
+        return words;
+    }
+
+    private static boolean isRun(Codec codec, long word) {
+        return codec == Codec.SIMPLE8_RLE && (word >>> 60) == 15;
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+import java.util.Arrays;
+
+/**
+ * Compressed values with min, max, sum and count statistics for every block of N values.
+ *
+ * The encoder collects the statistics of each block in a separate loop right before compressing it, so the second read
+ * of the block hits the CPU cache instead of memory. Every block is compressed separately, which lets queries decode a
+ * single block. Range predicates skip the blocks whose min/max range does not overlap, and aggregates use the stored
+ * statistics for the blocks that are fully covered, so only the blocks on the edges of a range need to be decoded.
+ *
+ * Sums wrap around on overflow, as with {@link java.util.stream.LongStream#sum()}.
+ *
+ * @author Michael Burman
+ */
+public final class ZoneMap {
+
+    public static final int DEFAULT_BLOCK_SIZE = 1024;
+
+    private final Codec codec;
+    private final int blockSize;
+    private final int size;
+    private final long[] words;
+    private final int[] wordOffsets; // blocks + 1 entries
+    private final long[] mins;
+    private final long[] maxs;
+    private final long[] sums;
+    private final DecodedBlockCache cache;
+    private final long streamId;
+
+    private ZoneMap(Codec codec, int blockSize, int size, long[] words, int[] wordOffsets, long[] mins, long[] maxs,
+                    long[] sums, DecodedBlockCache cache, long streamId) {
+        this.codec = codec;
+        this.blockSize = blockSize;
+        this.size = size;
+        this.words = words;
+        this.wordOffsets = wordOffsets;
+        this.mins = mins;
+        this.maxs = maxs;
+        this.sums = sums;
+        this.cache = cache;
+        this.streamId = streamId;
+    }
+
+    public static ZoneMap encode(Codec codec, long[] input) {
+        return encode(codec, input, 0, input.length, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Compress values and collect the statistics of each block
+     *
+     * @param codec     Compression method
+     * @param input     Values to be compressed
+     * @param inputPos  Starting position of the input to compress
+     * @param amount    How many values to compress from input
+     * @param blockSize Amount of values in each block
+     */
+    public static ZoneMap encode(Codec codec, long[] input, int inputPos, int amount, int blockSize) {
+        if(blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive, was " + blockSize);
+        }
+        int blocks = (int) (((long) amount + blockSize - 1) / blockSize);
+        long[] words = new long[amount];
+        int[] wordOffsets = new int[blocks + 1];
+        long[] mins = new long[blocks];
+        long[] maxs = new long[blocks];
+        long[] sums = new long[blocks];
+
+        for(int block = 0; block < blocks; block++) {
+            int start = inputPos + block * blockSize;
+            int count = Math.min(blockSize, inputPos + amount - start);
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            long sum = 0;
+            for(int i = start; i < start + count; i++) {
+                long value = input[i];
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                sum += value;
+            }
+            mins[block] = min;
+            maxs[block] = max;
+            sums[block] = sum;
+            wordOffsets[block + 1] = wordOffsets[block]
+                    + codec.compress(input, start, count, words, wordOffsets[block]);
+        }
+        return new ZoneMap(codec, blockSize, amount, Arrays.copyOf(words, wordOffsets[blocks]), wordOffsets, mins,
+                maxs, sums, null, 0);
+    }
+
+    /**
+     * Every call takes a new stream id, so two views returned by separate calls do not share the cached blocks. Use
+     * {@link #withCache(DecodedBlockCache, long)} with a common id for that.
+     *
+     * @param cache Cache of decoded blocks, or null for a view that decodes every read
+     * @return View of the same compressed data that keeps the decoded blocks in the cache under a new stream id
+     */
+    public ZoneMap withCache(DecodedBlockCache cache) {
+        return withCache(cache, cache != null ? DecodedBlockCache.newStreamId() : 0);
+    }
+
+    /**
+     * @param cache    Cache of decoded blocks, or null for a view that decodes every read
+     * @param streamId Id of the compressed data in the cache, the same for every view of this zone map
+     * @return View of the same compressed data that keeps the decoded blocks in the cache
+     */
+    public ZoneMap withCache(DecodedBlockCache cache, long streamId) {
+        return new ZoneMap(codec, blockSize, size, words, wordOffsets, mins, maxs, sums, cache, streamId);
+    }
+
+    public Codec codec() {
+        return codec;
+    }
+
+    public int blockSize() {
+        return blockSize;
+    }
+
+    /**
+     * @return Amount of values
+     */
+    public int size() {
+        return size;
+    }
+
+    public int blockCount() {
+        return mins.length;
+    }
+
+    public int blockValueCount(int block) {
+        checkBlock(block);
+        return Math.min(blockSize, size - block * blockSize);
+    }
+
+    public long blockMin(int block) {
+        checkBlock(block);
+        return mins[block];
+    }
+
+    public long blockMax(int block) {
+        checkBlock(block);
+        return maxs[block];
+    }
+
+    public long blockSum(int block) {
+        checkBlock(block);
+        return sums[block];
+    }
+
+    /**
+     * @return Amount of compressed words in the block
+     */
+    public int blockWords(int block) {
+        checkBlock(block);
+        return wordOffsets[block + 1] - wordOffsets[block];
+    }
+
+    /**
+     * @return Size of the compressed words in bytes, statistics excluded
+     */
+    public long sizeInBytes() {
+        return (long) words.length * Long.BYTES;
+    }
+
+    /**
+     * Find the blocks that may contain values in the given range using only the statistics
+     *
+     * @param min Smallest accepted value, inclusive
+     * @param max Largest accepted value, inclusive
+     * @return Matching block numbers in ascending order
+     */
+    public int[] candidateBlocks(long min, long max) {
+        int[] matching = new int[mins.length];
+        int found = 0;
+        for(int i = 0; i < mins.length; i++) {
+            if(mins[i] <= max && maxs[i] >= min) {
+                matching[found++] = i;
+            }
+        }
+        return Arrays.copyOf(matching, found);
+    }
+
+    /**
+     * @return Amount of values in the range [min, max]
+     */
+    public long countBetween(long min, long max) {
+        long count = 0;
+        for(int block = 0; block < mins.length; block++) {
+            if(mins[block] > max || maxs[block] < min) {
+                continue;
+            }
+            int values = blockValueCount(block);
+            if(mins[block] >= min && maxs[block] <= max) {
+                count += values;
+            } else {
+                long[] decoded = decode(block);
+                for(int i = 0; i < values; i++) {
+                    if(decoded[i] >= min && decoded[i] <= max) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return Sum of the values in the range [min, max]
+     */
+    public long sumBetween(long min, long max) {
+        long sum = 0;
+        for(int block = 0; block < mins.length; block++) {
+            if(mins[block] > max || maxs[block] < min) {
+                continue;
+            }
+            if(mins[block] >= min && maxs[block] <= max) {
+                sum += sums[block];
+            } else {
+                long[] decoded = decode(block);
+                for(int i = 0, values = blockValueCount(block); i < values; i++) {
+                    if(decoded[i] >= min && decoded[i] <= max) {
+                        sum += decoded[i];
+                    }
+                }
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @param from Index of the first value, inclusive
+     * @param to   Index of the last value, exclusive
+     * @return Sum of the values in positions [from, to)
+     */
+    public long sum(int from, int to) {
+        checkRange(from, to);
+        long sum = 0;
+        while(from < to) {
+            int block = from / blockSize;
+            int blockStart = block * blockSize;
+            int blockEnd = blockStart + blockValueCount(block);
+            if(from == blockStart && to >= blockEnd) {
+                sum += sums[block];
+            } else {
+                long[] decoded = decode(block);
+                for(int i = from, end = Math.min(to, blockEnd); i < end; i++) {
+                    sum += decoded[i - blockStart];
+                }
+            }
+            from = blockEnd;
+        }
+        return sum;
+    }
+
+    /**
+     * @param from Index of the first value, inclusive
+     * @param to   Index of the last value, exclusive
+     * @return Smallest value in positions [from, to)
+     */
+    public long min(int from, int to) {
+        checkRange(from, to);
+        if(from == to) {
+            throw new IllegalArgumentException("Range is empty");
+        }
+        long min = Long.MAX_VALUE;
+        while(from < to) {
+            int block = from / blockSize;
+            int blockStart = block * blockSize;
+            int blockEnd = blockStart + blockValueCount(block);
+            if(from == blockStart && to >= blockEnd) {
+                min = Math.min(min, mins[block]);
+            } else {
+                long[] decoded = decode(block);
+                for(int i = from, end = Math.min(to, blockEnd); i < end; i++) {
+                    min = Math.min(min, decoded[i - blockStart]);
+                }
+            }
+            from = blockEnd;
+        }
+        return min;
+    }
+
+    /**
+     * @param from Index of the first value, inclusive
+     * @param to   Index of the last value, exclusive
+     * @return Largest value in positions [from, to)
+     */
+    public long max(int from, int to) {
+        checkRange(from, to);
+        if(from == to) {
+            throw new IllegalArgumentException("Range is empty");
+        }
+        long max = Long.MIN_VALUE;
+        while(from < to) {
+            int block = from / blockSize;
+            int blockStart = block * blockSize;
+            int blockEnd = blockStart + blockValueCount(block);
+            if(from == blockStart && to >= blockEnd) {
+                max = Math.max(max, maxs[block]);
+            } else {
+                long[] decoded = decode(block);
+                for(int i = from, end = Math.min(to, blockEnd); i < end; i++) {
+                    max = Math.max(max, decoded[i - blockStart]);
+                }
+            }
+            from = blockEnd;
+        }
+        return max;
+    }
+
+    public long get(int index) {
+        if(index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " is outside [0, " + size + ")");
+        }
+        return decode(index / blockSize)[index % blockSize];
+    }
+
+    /**
+     * Decompress a single block
+     *
+     * @param block     Block number
+     * @param output    Destination array, must have space for the values of the block
+     * @param outputPos Starting position in the destination
+     * @return Amount of values written
+     */
+    public int decodeBlock(int block, long[] output, int outputPos) {
+        checkBlock(block);
+        int values = blockValueCount(block);
+        System.arraycopy(decode(block), 0, output, outputPos, values);
+        return values;
+    }
+
+    public long[] toArray() {
+        long[] values = new long[size];
+        for(int block = 0; block < mins.length; block++) {
+            decodeBlock(block, values, block * blockSize);
+        }
+        return values;
+    }
+
+    private long[] decode(int block) {
+        if(cache != null) {
+            long[] cached = cache.get(streamId, block);
+            if(cached != null) {
+                return cached;
+            }
+        }
+        int offset = wordOffsets[block];
+        long[] values = Simple8Context.internal().decompress(codec, words, offset, wordOffsets[block + 1] - offset,
+                blockValueCount(block));
+        if(cache != null) {
+            values = Arrays.copyOf(values, blockValueCount(block));
+            cache.put(streamId, block, values);
+        }
+        return values;
+    }
+
+    private void checkRange(int from, int to) {
+        if(from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") is outside [0, " + size + ")");
+        }
+    }
+
+    private void checkBlock(int block) {
+        if(block < 0 || block >= mins.length) {
+            throw new IndexOutOfBoundsException("Block " + block + " is outside [0, " + mins.length + ")");
+        }
+    }
+}
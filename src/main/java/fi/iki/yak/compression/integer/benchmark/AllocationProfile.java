@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer.benchmark;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the kernel benchmarks with the JMH gc profiler and fails if any of them allocates. The normalized allocation
+ * rate is multiplied back to bytes per benchmark invocation, anything below one byte is JMH's own bookkeeping spread
+ * over the invocations of an iteration.
+ *
+ * <pre>
+ * java -cp target/benchmark.jar fi.iki.yak.compression.integer.benchmark.AllocationProfile [benchmark regexp]
+ * </pre>
+ *
+ * @author Michael Burman
+ */
+public class AllocationProfile {
+
+    private static final String ALLOCATION_RATE = "gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : SelectorBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .warmupIterations(3)
+                .measurementIterations(3)
+                .forks(1)
+                .build();
+
+        Collection<RunResult> results = new Runner(options).run();
+
+        int failures = 0;
+        for(RunResult result : results) {
+            for(Map.Entry<String, Result> secondary : result.getSecondaryResults().entrySet()) {
+                if(!secondary.getKey().endsWith(ALLOCATION_RATE)) {
+                    continue;
+                }
+                double perInvocation = secondary.getValue().getScore() * result.getParams().getOpsPerInvocation();
+                if(perInvocation >= 1.0) {
+                    failures++;
+                    System.err.printf("%s %s allocates %.1f bytes per invocation%n",
+                            result.getParams().getBenchmark(), result.getParams().getParam("bits"), perInvocation);
+                }
+            }
+        }
+        if(failures > 0) {
+            System.exit(1);
+        }
+        System.out.println("No allocations in " + results.size() + " benchmarks");
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fi.iki.yak.compression.integer.Codec;
+
+/**
+ * Encoding and decoding speed when every value has the same bit width, which isolates the cost of each selector.
+ * The score is values per second. Select widths with -p bits=1,8,60
+ *
+ * @author Michael Burman
+ */
+@BenchmarkMode(Mode.Throughput)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class BitWidthBenchmark {
+
+    private static final int SIZE = 16800; // Multiple of every selector value count
+
+    @Param({ "SIMPLE8", "SIMPLE8_RLE" })
+    public Codec codec;
+
+    @Param({ "0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12", "13", "14", "15", "16", "17", "18",
+            "19", "20", "21", "22", "23", "24", "25", "26", "27", "28", "29", "30", "31", "32", "33", "34", "35", "36",
+            "37", "38", "39", "40", "41", "42", "43", "44", "45", "46", "47", "48", "49", "50", "51", "52", "53", "54",
+            "55", "56", "57", "58", "59", "60" })
+    public int bits;
+
+    public long[] input;
+    public long[] output;
+    public long[] compressed;
+    public long[] decompressed;
+    public int amount;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        input = Distribution.bitWidth(bits, SIZE);
+        output = new long[SIZE];
+        compressed = new long[SIZE];
+        amount = codec.compress(input, 0, SIZE, compressed, 0);
+        decompressed = new long[SIZE];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int encode(Counters.Ratio ratio) {
+        ratio.bitsPerValue = amount * 64.0 / SIZE;
+        return codec.compress(input, 0, SIZE, output, 0);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public long[] decode(Counters.Ratio ratio) {
+        ratio.bitsPerValue = amount * 64.0 / SIZE;
+        codec.decompress(compressed, 0, amount, decompressed, 0);
+        return decompressed;
+    }
+}
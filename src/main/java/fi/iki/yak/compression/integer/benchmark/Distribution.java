@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Data sets used by the benchmarks
+ *
+ * @author Michael Burman
+ */
+public enum Distribution {
+    /**
+     * Uniformly random values in [0, 100000)
+     */
+    UNIFORM {
+        @Override
+        public long[] generate(int size) {
+            return ThreadLocalRandom.current().longs(size, 0, 100000).toArray();
+        }
+    },
+    /**
+     * Power law distributed values in [0, 10000), small values are the most common
+     */
+    ZIPF {
+        @Override
+        public long[] generate(int size) {
+            return new ZipfDistribution(1.1, 10000).stream().limit(size).asLongStream().toArray();
+        }
+    },
+    /**
+     * Status codes that repeat in long runs
+     */
+    RUNS {
+        @Override
+        public long[] generate(int size) {
+            long[] statuses = { 0, 1, 2, 3, 200, 404, 500 };
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long[] values = new long[size];
+            for(int i = 0; i < size; ) {
+                long status = statuses[random.nextInt(statuses.length)];
+                for(int end = Math.min(size, i + 1 + random.nextInt(1000)); i < end; i++) {
+                    values[i] = status;
+                }
+            }
+            return values;
+        }
+    },
+    /**
+     * Monotone millisecond timestamps with a one second interval and jitter
+     */
+    TIMESTAMPS {
+        @Override
+        public long[] generate(int size) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long[] values = new long[size];
+            long timestamp = 1500000000000L;
+            for(int i = 0; i < size; i++) {
+                timestamp += 1000 + random.nextInt(-50, 50);
+                values[i] = timestamp;
+            }
+            return values;
+        }
+    },
+    /**
+     * Differences between consecutive monotone timestamps, how timestamps are usually stored
+     */
+    TIMESTAMP_DELTAS {
+        @Override
+        public long[] generate(int size) {
+            long[] values = TIMESTAMPS.generate(size + 1);
+            long[] deltas = new long[size];
+            for(int i = 0; i < size; i++) {
+                deltas[i] = values[i + 1] - values[i];
+            }
+            return deltas;
+        }
+    };
+
+    public abstract long[] generate(int size);
+
+    /**
+     * @param bits Bit width of every value, between 0 and 60
+     * @param size Amount of values
+     * @return Random values that all require exactly the given amount of bits
+     */
+    public static long[] bitWidth(int bits, int size) {
+        if(bits < 0 || bits > 60) {
+            throw new IllegalArgumentException("Bit width must be between 0 and 60, was " + bits);
+        }
+        if(bits == 0) {
+            return new long[size];
+        }
+        long low = 1L << (bits - 1);
+        return ThreadLocalRandom.current().longs(size, low, low << 1).toArray();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fi.iki.yak.compression.integer.Codec;
+
+/**
+ * Encoding and decoding speed of both codecs for different data distributions and input sizes.
+ *
+ * Values per second is reported with the "values" counter and the compressed size with "bitsPerValue". Select a
+ * subset with the JMH parameter options, for example: -p codec=SIMPLE8_RLE -p distribution=RUNS
+ *
+ * @author Michael Burman
+ */
+@BenchmarkMode(Mode.Throughput)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class DistributionBenchmark {
+
+    @Param({ "SIMPLE8", "SIMPLE8_RLE" })
+    public Codec codec;
+
+    @Param({ "UNIFORM", "ZIPF", "RUNS", "TIMESTAMPS", "TIMESTAMP_DELTAS" })
+    public Distribution distribution;
+
+    @Param({ "128", "4096", "131072", "10000000" })
+    public int size;
+
+    public long[] input;
+    public long[] output;
+    public long[] compressed;
+    public long[] decompressed;
+    public int amount;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        input = distribution.generate(size);
+        output = new long[size];
+        compressed = new long[size];
+        amount = codec.compress(input, 0, size, compressed, 0);
+        decompressed = new long[size];
+    }
+
+    @Benchmark
+    public int encode(Counters.Values values, Counters.Ratio ratio) {
+        values.values += size;
+        ratio.bitsPerValue = amount * 64.0 / size;
+        return codec.compress(input, 0, size, output, 0);
+    }
+
+    @Benchmark
+    public long[] decode(Counters.Values values, Counters.Ratio ratio) {
+        values.values += size;
+        ratio.bitsPerValue = amount * 64.0 / size;
+        codec.decompress(compressed, 0, amount, decompressed, 0);
+        return decompressed;
+    }
+}
@@ -32,6 +32,7 @@ import org.openjdk.jmh.annotations.Warmup;
 import org.openjdk.jmh.infra.Blackhole;
 
 import fi.iki.yak.compression.integer.Simple8;
+import fi.iki.yak.compression.integer.Simple8RLE;
 
 /**
  * @author michael
@@ -43,6 +44,8 @@ import fi.iki.yak.compression.integer.Simple8;
 @Measurement(iterations = 10) // Reduce the amount of iterations if you start to see GC interference
 public class EncodeBenchmark {
 
+    private static final int SIZE = 100000;
+
     @State(Scope.Benchmark)
     public static class DataGenerator {
         public long[] input;
@@ -50,33 +53,45 @@ public class EncodeBenchmark {
         public long[] compressed;
         public long[] decompressed;
         public int amount = 0;
+        public long[] compressedRLE;
+        public int amountRLE = 0;
 
         @Setup(Level.Trial)
         public void setup() {
             ThreadLocalRandom random = ThreadLocalRandom.current();
-            input = random.longs(0, 100000).limit(100000).toArray();
+            input = random.longs(0, 100000).limit(SIZE).toArray();
             output = new long[input.length];
             compressed = new long[input.length];
             amount = Simple8.compress(input, compressed);
+            compressedRLE = new long[input.length];
+            amountRLE = Simple8RLE.compress(input, compressedRLE);
             decompressed = new long[input.length];
         }
     }
 
     @Benchmark
-    @OperationsPerInvocation(10000)
+    @OperationsPerInvocation(SIZE)
     public void encodingBenchmark(DataGenerator dg, Blackhole bh) {
         bh.consume(Simple8.compress(dg.input, dg.output));
     }
 
     @Benchmark
-    @OperationsPerInvocation(10000)
-    public void encodingBenchmarkOrig(DataGenerator dg, Blackhole bh) {
-        bh.consume(Simple8.compress(dg.input, dg.output));
+    @OperationsPerInvocation(SIZE)
+    public void decodingBenchmark(DataGenerator dg, Blackhole bh) {
+        Simple8.decompress(dg.compressed, 0, dg.amount, dg.decompressed, 0);
+        bh.consume(dg.decompressed);
     }
 
     @Benchmark
-    @OperationsPerInvocation(10000)
-    public void decodingBenchmark(DataGenerator dg, Blackhole bh) {
-        Simple8.decompress(dg.compressed, 0, dg.amount, dg.decompressed, 0);
+    @OperationsPerInvocation(SIZE)
+    public void encodingBenchmarkRLE(DataGenerator dg, Blackhole bh) {
+        bh.consume(Simple8RLE.compress(dg.input, dg.output));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void decodingBenchmarkRLE(DataGenerator dg, Blackhole bh) {
+        Simple8RLE.decompress(dg.compressedRLE, 0, dg.amountRLE, dg.decompressed, 0);
+        bh.consume(dg.decompressed);
     }
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fi.iki.yak.compression.integer.Codec;
+
+/**
+ * Time per value of a single encode/decode kernel. The input is built so that every compressed word uses the
+ * selector of the given bit width, the setup fails if the codec picks any other selector. Bit width 0 measures the
+ * 240 value zero selector of Simple8 and the run length word of Simple8RLE. The 120 zero selector of Simple8 can not
+ * be isolated, as it is only used in front of a non-zero value.
+ *
+ * To see the generated code of the hottest kernel, run a single case under the perfasm profiler (requires
+ * hsdis and perf on Linux), and to verify that the kernels do not allocate, use the gc profiler:
+ *
+ * <pre>
+ * java -jar target/benchmark.jar SelectorBenchmark.decode -p codec=SIMPLE8 -p bits=7 -prof perfasm
+ * java -jar target/benchmark.jar SelectorBenchmark -prof gc
+ * </pre>
+ *
+ * With -prof gc the gc.alloc.rate.norm result should stay at zero bytes per operation.
+ *
+ * @author Michael Burman
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class SelectorBenchmark {
+
+    private static final int SIZE = 13440; // Multiple of every selector value count, 8 * 1680
+
+    @Param({ "SIMPLE8", "SIMPLE8_RLE" })
+    public Codec codec;
+
+    @Param({ "0", "1", "2", "3", "4", "5", "6", "7", "8", "10", "12", "15", "20", "30", "60" })
+    public int bits;
+
+    public long[] input;
+    public long[] output;
+    public long[] compressed;
+    public long[] decompressed;
+    public int amount;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        input = selectorInput(bits, 60 / Math.max(bits, 1), SIZE);
+        output = new long[SIZE];
+        compressed = new long[SIZE];
+        amount = codec.compress(input, 0, SIZE, compressed, 0);
+        decompressed = new long[SIZE];
+
+        long selector = compressed[0] >>> 60;
+        for(int i = 0; i < amount; i++) {
+            if(compressed[i] >>> 60 != selector) {
+                throw new IllegalStateException("Input for " + bits + " bits used more than one selector");
+            }
+        }
+        if(bits > 0 && amount != SIZE / (60 / bits)) {
+            throw new IllegalStateException("Input for " + bits + " bits did not fill the words");
+        }
+    }
+
+    /**
+     * Every group of values stored in one word starts with a value that requires exactly the given amount of bits,
+     * the rest are random values of at most that width. This prevents runs and smaller selectors.
+     */
+    static long[] selectorInput(int bits, int groupSize, int size) {
+        long[] values = new long[size];
+        if(bits == 0) {
+            return values;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long high = 1L << bits;
+        for(int i = 0; i < size; i++) {
+            values[i] = i % groupSize == 0 ? random.nextLong(high >>> 1, high) : random.nextLong(high);
+        }
+        return values;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int encode() {
+        return codec.compress(input, 0, SIZE, output, 0);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public long[] decode() {
+        codec.decompress(compressed, 0, amount, decompressed, 0);
+        return decompressed;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Generate Zipf (power law) distributed sets for testing compression algorithms. The cumulative probabilities are
+ * calculated once, so each sample is a binary search and large benchmark inputs can be generated quickly.
+ *
+ * @author Michael Burman
+ */
+public class ZipfDistribution {
+
+    private ThreadLocalRandom random;
+
+    private double alpha;
+    private int elements;
+    private double[] cumulative;
+
+    public ZipfDistribution(double alpha, int elements) {
+        random = ThreadLocalRandom.current();
+        this.alpha = alpha;
+        this.elements = elements;
+        cumulative = initializeZipf(alpha, elements);
+    }
+
+    private int next() {
+        double z = 0;
+
+        while(z == 0) {
+            z = random.nextDouble();
+        }
+
+        // Map z to the first value whose cumulative probability reaches it
+        int i = Arrays.binarySearch(cumulative, z);
+        if(i < 0) {
+            i = -i - 1;
+        }
+
+        return Math.min(i, elements - 1); // Between 0 and n - 1
+    }
+
+    private static double[] initializeZipf(double alpha, int elements) {
+        double[] cumulative = new double[elements];
+        double norm = 0;
+        for(int i = 1; i <= elements; i++) {
+            norm = norm + (1.0 / Math.pow((double) i, alpha));
+            cumulative[i - 1] = norm;
+        }
+
+        for(int i = 0; i < elements; i++) {
+            cumulative[i] = cumulative[i] / norm;
+        }
+
+        return cumulative;
+    }
+
+    public IntStream stream() {
+        return IntStream.generate(this::next);
+    }
+
+    public static void main(String[] args) {
+        ZipfDistribution zipf = new ZipfDistribution(1.0, 10);
+        zipf.stream().limit(100)
+                .sorted()
+                .forEach(System.out::println);
+    }
+}
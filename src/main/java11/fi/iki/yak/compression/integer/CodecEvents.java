@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017-2018 Michael Burman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.iki.yak.compression.integer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Emits Java Flight Recorder events for compress and decompress calls. The events are disabled by default and
+ * enabled with the recording settings, for example: fi.iki.yak.compression.Compress#enabled=true and
+ * fi.iki.yak.compression.Compress#threshold=100 us. When disabled, no event object is created.
+ *
+ * @author Michael Burman
+ */
+final class CodecEvents {
+
+    private static final EventType COMPRESS = EventType.getEventType(CompressEvent.class);
+    private static final EventType DECOMPRESS = EventType.getEventType(DecompressEvent.class);
+
+    private CodecEvents() {
+    }
+
+    static Object beginCompress() {
+        if(!COMPRESS.isEnabled()) {
+            return null;
+        }
+        CompressEvent event = new CompressEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endCompress(Object event, Codec codec, int values, int words) {
+        if(event == null) {
+            return;
+        }
+        CompressEvent compress = (CompressEvent) event;
+        compress.end();
+        if(compress.shouldCommit()) {
+            compress.codec = codec.name();
+            compress.values = values;
+            compress.words = words;
+            compress.commit();
+        }
+    }
+
+    static Object beginDecompress() {
+        if(!DECOMPRESS.isEnabled()) {
+            return null;
+        }
+        DecompressEvent event = new DecompressEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endDecompress(Object event, Codec codec, long[] input, int inputPos, int words) {
+        if(event == null) {
+            return;
+        }
+        DecompressEvent decompress = (DecompressEvent) event;
+        decompress.end();
+        if(decompress.shouldCommit()) {
+            decompress.codec = codec.name();
+            decompress.values = codec.countValues(input, inputPos, words);
+            decompress.words = words;
+            decompress.commit();
+        }
+    }
+
+    @Name("fi.iki.yak.compression.Compress")
+    @Label("Compress")
+    @Description("Values compressed with a Simple-8b codec")
+    @Category({ "Compression" })
+    @Enabled(false)
+    @StackTrace(false)
+    @Threshold("0 ns")
+    static final class CompressEvent extends Event {
+        @Label("Codec")
+        String codec;
+
+        @Label("Input Values")
+        int values;
+
+        @Label("Output Words")
+        int words;
+    }
+
+    @Name("fi.iki.yak.compression.Decompress")
+    @Label("Decompress")
+    @Description("Words decompressed with a Simple-8b codec")
+    @Category({ "Compression" })
+    @Enabled(false)
+    @StackTrace(false)
+    @Threshold("0 ns")
+    static final class DecompressEvent extends Event {
+        @Label("Codec")
+        String codec;
+
+        @Label("Input Words")
+        int words;
+
+        @Label("Output Values")
+        long values;
+    }
+}
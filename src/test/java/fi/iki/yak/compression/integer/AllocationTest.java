@@ -0,0 +1,119 @@
+package fi.iki.yak.compression.integer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Verifies that the hot paths do not allocate once they are warmed up. Allocation is measured with the per-thread
+ * allocation counter of HotSpot, the cost of reading the counter itself is calibrated away.
+ *
+ * @author Michael Burman
+ */
+public class AllocationTest {
+
+    private static final int WARMUP_ITERATIONS = 5000;
+    private static final int MEASURED_ITERATIONS = 1000;
+    private static final int ROUNDS = 5;
+
+    private static com.sun.management.ThreadMXBean threadBean;
+    private static long calibration;
+
+    private final long[] input = ThreadLocalRandom.current().longs(4096, 0, 1 << 20).toArray();
+    private final long[] output = new long[input.length];
+    private final long[] decoded = new long[input.length];
+
+    @BeforeAll
+    static void calibrate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean, "Thread allocation counters are not available");
+        threadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        Runnable empty = () -> {
+        };
+        measure(empty);
+        calibration = measure(empty);
+    }
+
+    @Test
+    void simple8() throws Exception {
+        int amount = Simple8.compress(input, output);
+        assertNoAllocation(() -> Simple8.compress(input, 0, input.length, output, 0));
+        assertNoAllocation(() -> Simple8.decompress(output, 0, amount, decoded, 0));
+    }
+
+    @Test
+    void simple8RLE() throws Exception {
+        int amount = Simple8RLE.compress(input, output);
+        assertNoAllocation(() -> Simple8RLE.compress(input, 0, input.length, output, 0));
+        assertNoAllocation(() -> Simple8RLE.decompress(output, 0, amount, decoded, 0));
+    }
+
+    @Test
+    void codecAndContext() throws Exception {
+        for(Codec codec : Codec.values()) {
+            assertNoAllocation(() -> Simple8Context.current().compress(codec, input, 0, input.length));
+            long[] words = Simple8Context.current().compressToArray(codec, input, 0, input.length);
+            assertNoAllocation(() -> Simple8Context.current().decompress(codec, words, 0, words.length,
+                    input.length));
+            assertNoAllocation(() -> codec.countValues(words, 0, words.length));
+        }
+    }
+
+    @Test
+    void spliteratorRead() throws Exception {
+        // Enough values for every small read of the warmup and the measured rounds
+        long[] values = new long[(WARMUP_ITERATIONS + ROUNDS * MEASURED_ITERATIONS) * 3];
+        for(int i = 0; i < values.length; i++) {
+            values[i] = input[i % input.length];
+        }
+        long[] words = Simple8Context.current().compressToArray(Codec.SIMPLE8_RLE, values, 0, values.length);
+        Simple8Spliterator spliterator = new Simple8Spliterator(Codec.SIMPLE8_RLE, words, 0, words.length);
+        assertNoAllocation(() -> spliterator.read(decoded, 0, 3));
+    }
+
+    @Test
+    void randomAccess() throws Exception {
+        CompressedLongArray array = new CompressedLongArray(Codec.SIMPLE8, 512);
+        array.addAll(input, 0, input.length);
+        ZoneMap zoneMap = ZoneMap.encode(Codec.SIMPLE8_RLE, input, 0, input.length, 512);
+        assertNoAllocation(() -> array.get(1234));
+        assertNoAllocation(() -> array.decodeBlock(3, decoded, 0));
+        assertNoAllocation(() -> zoneMap.sum(100, 4000));
+        assertNoAllocation(() -> zoneMap.countBetween(1000, 50000));
+
+        try(OffHeapCompressedColumn column = OffHeapCompressedColumn.builder(Codec.SIMPLE8)
+                .addAll(input, 0, input.length).build();
+            OffHeapCompressedColumn.Reader reader = column.reader()) {
+            assertNoAllocation(() -> reader.get(4000));
+            assertNoAllocation(() -> reader.decodeBlock(0, decoded, 0));
+        }
+    }
+
+    private static void assertNoAllocation(Runnable operation) {
+        for(int i = 0; i < WARMUP_ITERATIONS; i++) {
+            operation.run();
+        }
+        long allocated = Long.MAX_VALUE;
+        for(int round = 0; round < ROUNDS && allocated > 0; round++) {
+            allocated = Math.min(allocated, measure(operation) - calibration);
+        }
+        assertEquals(0, Math.max(allocated, 0), "Bytes allocated in " + MEASURED_ITERATIONS + " iterations");
+    }
+
+    private static long measure(Runnable operation) {
+        long thread = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(thread);
+        for(int i = 0; i < MEASURED_ITERATIONS; i++) {
+            operation.run();
+        }
+        return threadBean.getThreadAllocatedBytes(thread) - before;
+    }
+}
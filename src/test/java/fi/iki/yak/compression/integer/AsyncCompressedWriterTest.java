@@ -0,0 +1,93 @@
+package fi.iki.yak.compression.integer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+
+import fi.iki.yak.compression.integer.benchmark.ZipfDistribution;
+
+/**
+ * Tests for AsyncCompressedWriter
+ *
+ * @author Michael Burman
+ */
+public class AsyncCompressedWriterTest {
+
+    @Test
+    void writtenFileIsReadable() throws Exception {
+        ZipfDistribution zipf = new ZipfDistribution(0.9, 2000);
+        long[] input = zipf.stream().limit(100000).asLongStream().toArray();
+
+        Path file = Files.createTempFile("async-writer", ".s8");
+        try {
+            AsynchronousFileChannel channel = AsynchronousFileChannel.open(file, StandardOpenOption.WRITE);
+            AsyncCompressedWriter writer = new AsyncCompressedWriter(channel, Codec.SIMPLE8, 1000, 3);
+            writer.write(input, 0, 50000);
+            writer.flush();
+            for(int i = 50000; i < input.length; i++) {
+                writer.writeLong(input[i]);
+            }
+            writer.close();
+            assertEquals(writer.position(), Files.size(file));
+
+            try(Simple8InputStream in = new Simple8InputStream(Files.newInputStream(file))) {
+                long[] decoded = new long[input.length];
+                int pos = 0;
+                for(int read; (read = in.read(decoded, pos, decoded.length - pos)) > 0; ) {
+                    pos += read;
+                }
+                assertEquals(input.length, pos);
+                assertArrayEquals(input, decoded);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void closedWriterRejectsValues() throws Exception {
+        Path file = Files.createTempFile("async-writer", ".s8");
+        try {
+            AsyncCompressedWriter writer = new AsyncCompressedWriter(file, Codec.SIMPLE8_RLE);
+            writer.writeLong(1);
+            writer.close();
+            writer.close();
+            assertThrows(IOException.class, () -> writer.writeLong(2));
+
+            try(Simple8InputStream in = new Simple8InputStream(Files.newInputStream(file))) {
+                assertEquals(1, in.readLong());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void tooLargeValueIsRejected() throws Exception {
+        Path file = Files.createTempFile("async-writer", ".s8");
+        try {
+            AsyncCompressedWriter writer = new AsyncCompressedWriter(file, Codec.SIMPLE8);
+            writer.writeLong(1);
+            assertThrows(IllegalArgumentException.class, () -> writer.writeLong(1L << 62));
+            assertThrows(IllegalArgumentException.class, () -> writer.write(new long[] { 2, -1 }, 0, 2));
+            writer.flush();
+            writer.writeLong(2);
+            writer.close();
+
+            try(Simple8InputStream in = new Simple8InputStream(Files.newInputStream(file))) {
+                assertEquals(1, in.readLong());
+                assertEquals(2, in.readLong());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
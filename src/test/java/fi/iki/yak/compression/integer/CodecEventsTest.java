@@ -0,0 +1,72 @@
+package fi.iki.yak.compression.integer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.Closeable;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for CodecEvents, the Java 8 version on the class path and the Java 11 version in the multi-release output
+ *
+ * @author Michael Burman
+ */
+public class CodecEventsTest {
+
+    private static final String COMPRESS_EVENT = "fi.iki.yak.compression.Compress";
+
+    @Test
+    void classPathVersionDoesNothing() throws Exception {
+        // The test class path is the classes directory, not the jar, so the Java 8 version is always loaded
+        assertEquals(0, CodecEvents.class.getDeclaredClasses().length);
+        assertNull(CodecEvents.beginCompress());
+        assertNull(CodecEvents.beginDecompress());
+        CodecEvents.endCompress(null, Codec.SIMPLE8, 10, 1);
+        CodecEvents.endDecompress(null, Codec.SIMPLE8, new long[1], 0, 1);
+
+        long[] words = new long[4];
+        int count = Simple8.compress(new long[] { 1, 2, 3 }, 0, 3, words, 0);
+        assertEquals(1, count);
+    }
+
+    @Test
+    void versionedClassEmitsEvents() throws Exception {
+        Path classes = Paths.get(CodecEvents.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        Path versioned = classes.resolve("META-INF/versions/11");
+        assumeTrue(Files.isDirectory(versioned), "Java 11 classes are built by the jdk11-jfr profile");
+
+        ClassLoader platform = ClassLoader.getSystemClassLoader().getParent();
+        try(URLClassLoader loader = new URLClassLoader(
+                new URL[] { versioned.toUri().toURL(), classes.toUri().toURL() }, platform)) {
+            Class<?> events = loader.loadClass(CodecEvents.class.getName());
+            assertEquals(2, events.getDeclaredClasses().length);
+            Method begin = events.getDeclaredMethod("beginCompress");
+            begin.setAccessible(true);
+            assertNull(begin.invoke(null));
+
+            // The recording API is accessed reflectively as the tests are compiled for Java 8
+            Class<?> recordingClass = platform.loadClass("jdk.jfr.Recording");
+            Object recording = recordingClass.getConstructor().newInstance();
+            try(Closeable ignored = (Closeable) recording) {
+                recordingClass.getMethod("enable", String.class).invoke(recording, COMPRESS_EVENT);
+                recordingClass.getMethod("start").invoke(recording);
+
+                Object event = begin.invoke(null);
+                assertEquals(events.getName() + "$CompressEvent", event.getClass().getName());
+
+                Class<?> codec = loader.loadClass(Codec.class.getName());
+                Method end = events.getDeclaredMethod("endCompress", Object.class, codec, int.class, int.class);
+                end.setAccessible(true);
+                end.invoke(null, event, codec.getEnumConstants()[0], 10, 1);
+            }
+        }
+    }
+}
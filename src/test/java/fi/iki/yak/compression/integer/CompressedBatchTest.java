@@ -0,0 +1,91 @@
+package fi.iki.yak.compression.integer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for CompressedBatch
+ *
+ * @author Michael Burman
+ */
+public class CompressedBatchTest {
+
+    @Test
+    void arrays() throws Exception {
+        long[][] series = series(2000);
+        for(Codec codec : Codec.values()) {
+            CompressedBatch batch = CompressedBatch.compress(codec, series);
+            assertEquals(series.length, batch.seriesCount());
+            assertEquals(batch.wordOffset(series.length - 1) + batch.wordCount(series.length - 1),
+                    batch.arena().length);
+            for(int i = 0; i < series.length; i++) {
+                assertEquals(series[i].length, batch.valueCount(i));
+                long[] decoded = new long[series[i].length];
+                assertEquals(series[i].length, batch.decompress(i, decoded, 0));
+                assertArrayEquals(series[i], decoded);
+            }
+            assertAllDecoded(batch, series);
+        }
+    }
+
+    @Test
+    void flatArrayWithOffsets() throws Exception {
+        long[][] series = series(500);
+        int[] offsets = new int[series.length + 1];
+        for(int i = 0; i < series.length; i++) {
+            offsets[i + 1] = offsets[i] + series[i].length;
+        }
+        long[] values = new long[offsets[series.length]];
+        for(int i = 0; i < series.length; i++) {
+            System.arraycopy(series[i], 0, values, offsets[i], series[i].length);
+        }
+        for(Codec codec : Codec.values()) {
+            CompressedBatch batch = CompressedBatch.compress(codec, values, offsets);
+            assertEquals(values.length, batch.valueCount());
+            assertEquals(Arrays.toString(CompressedBatch.compress(codec, series).arena()),
+                    Arrays.toString(batch.arena()));
+            assertAllDecoded(batch, series);
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> CompressedBatch.compress(Codec.SIMPLE8, values, new int[] { 0, 10, 5 }));
+    }
+
+    @Test
+    void emptySeries() throws Exception {
+        long[][] series = { new long[0], { 1, 2, 3 }, new long[0] };
+        CompressedBatch batch = CompressedBatch.compress(Codec.SIMPLE8_RLE, series);
+        assertEquals(0, batch.wordCount(0));
+        assertEquals(0, batch.wordCount(2));
+        assertAllDecoded(batch, series);
+        assertThrows(IndexOutOfBoundsException.class, () -> batch.valueCount(3));
+    }
+
+    private static void assertAllDecoded(CompressedBatch batch, long[][] series) {
+        long[] all = new long[batch.valueCount()];
+        assertEquals(all.length, batch.decompressAll(all, 0));
+        for(int i = 0; i < series.length; i++) {
+            int offset = batch.valueOffset(i);
+            assertArrayEquals(series[i], Arrays.copyOfRange(all, offset, offset + series[i].length));
+        }
+    }
+
+    private static long[][] series(int count) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long[][] series = new long[count][];
+        for(int i = 0; i < count; i++) {
+            series[i] = new long[random.nextInt(100, 1000)];
+            long repeated = random.nextLong(1L << 40);
+            for(int j = 0; j < series[i].length; j++) {
+                // Runs of a repeated value between values of varying bit widths
+                series[i][j] = (j / 50) % 4 == 0 ? repeated : random.nextLong(1L << random.nextInt(1, 41));
+            }
+        }
+        return series;
+    }
+}
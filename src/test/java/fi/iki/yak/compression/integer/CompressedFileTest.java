@@ -0,0 +1,113 @@
+package fi.iki.yak.compression.integer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for CompressedFileWriter and CompressedFileReader
+ *
+ * @author Michael Burman
+ */
+public class CompressedFileTest {
+
+    @Test
+    void fileRoundTrip() throws Exception {
+        long[] input = new long[25000];
+        Arrays.setAll(input, i -> i < 5000 ? 0 : i / 3);
+
+        for(Codec codec : Codec.values()) {
+            Path file = Files.createTempFile("compressed-file", ".s8f");
+            try {
+                try(CompressedFileWriter writer = new CompressedFileWriter(file, codec, 1000)) {
+                    writer.write(input, 0, 12345);
+                    for(int i = 12345; i < input.length; i++) {
+                        writer.writeLong(input[i]);
+                    }
+                }
+                assertTrue(Files.size(file) < input.length * Long.BYTES);
+
+                try(CompressedFileReader reader = CompressedFileReader.open(file)) {
+                    assertEquals(codec, reader.codec());
+                    assertEquals(1000, reader.blockSize());
+                    assertEquals(25, reader.blockCount());
+                    assertEquals(input.length, reader.valueCount());
+
+                    long[] decoded = new long[input.length];
+                    for(int block = 0; block < reader.blockCount(); block++) {
+                        assertEquals(block * 1000L, reader.blockStart(block));
+                        reader.readBlock(block, decoded, (int) reader.blockStart(block));
+                    }
+                    assertArrayEquals(input, decoded);
+                    assertEquals(input[24999], reader.get(24999));
+                    assertEquals(input[7777], reader.get(7777));
+                }
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    void blockIndexStatistics() throws Exception {
+        long[] input = new long[10500];
+        Arrays.setAll(input, i -> i * 2);
+
+        Path file = Files.createTempFile("compressed-file", ".s8f");
+        try {
+            try(CompressedFileWriter writer = new CompressedFileWriter(file, Codec.SIMPLE8, 1000)) {
+                writer.write(input, 0, input.length);
+                assertEquals(10, writer.blocks());
+            }
+
+            try(CompressedFileReader reader = CompressedFileReader.open(file)) {
+                assertEquals(11, reader.blockCount());
+                assertEquals(500, reader.blockValueCount(10));
+                assertEquals(2000, reader.blockMin(1));
+                assertEquals(3998, reader.blockMax(1));
+                assertArrayEquals(new int[] { 2, 3 }, reader.blocksInRange(4500, 6100));
+                assertArrayEquals(new int[0], reader.blocksInRange(30000, 40000));
+                assertEquals(10, reader.blockOf(10000));
+                assertThrows(IndexOutOfBoundsException.class, () -> reader.blockOf(10500));
+
+                long[] block = new long[1000];
+                assertEquals(1000, reader.readBlock(3, block, 0));
+                assertEquals(6000, block[0]);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void emptyAndTruncatedFiles() throws Exception {
+        Path file = Files.createTempFile("compressed-file", ".s8f");
+        try {
+            new CompressedFileWriter(file, Codec.SIMPLE8_RLE).close();
+            try(CompressedFileReader reader = CompressedFileReader.open(file)) {
+                assertEquals(0, reader.blockCount());
+                assertEquals(0, reader.valueCount());
+            }
+
+            try(CompressedFileWriter writer = new CompressedFileWriter(file, Codec.SIMPLE8_RLE)) {
+                writer.write(new long[] { 1, 2, 3 }, 0, 3);
+            }
+            try(FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(channel.size() - 1);
+            }
+            assertThrows(IOException.class, () -> CompressedFileReader.open(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package fi.iki.yak.compression.integer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.PrimitiveIterator;
+
+import org.junit.jupiter.api.Test;
+
+import fi.iki.yak.compression.integer.benchmark.ZipfDistribution;
+
+/**
+ * Tests for CompressedLongArray
+ *
+ * @author Michael Burman
+ */
+public class CompressedLongArrayTest {
+
+    @Test
+    void appendAndRead() throws Exception {
+        for(Codec codec : Codec.values()) {
+            ZipfDistribution zipf = new ZipfDistribution(0.8, 5000);
+            long[] input = zipf.stream().limit(10000).asLongStream().toArray();
+
+            CompressedLongArray array = new CompressedLongArray(codec, 256);
+            array.addAll(input, 0, input.length);
+
+            assertEquals(input.length, array.size());
+            assertEquals(input.length / 256, array.blocks());
+            assertArrayEquals(input, array.toArray());
+            for(int i = 0; i < input.length; i++) {
+                assertEquals(input[i], array.get(i));
+            }
+
+            PrimitiveIterator.OfLong iterator = array.iterator();
+            for(long value : input) {
+                assertEquals(value, iterator.nextLong());
+            }
+            assertTrue(!iterator.hasNext());
+        }
+    }
+
+    @Test
+    void runsStayCompressed() throws Exception {
+        CompressedLongArray array = new CompressedLongArray(Codec.SIMPLE8_RLE, 1024);
+        long[] input = new long[100 * 1024];
+        for(int i = 0; i < input.length; i++) {
+            input[i] = (i / 3000) % 2 == 0 ? 0 : 1;
+        }
+        array.addAll(input, 0, input.length);
+
+        assertArrayEquals(input, array.toArray());
+        assertTrue(array.sizeInBytes() < input.length);
+    }
+
+    @Test
+    void rejectsUnsupportedValues() throws Exception {
+        CompressedLongArray array = new CompressedLongArray(Codec.SIMPLE8);
+        assertThrows(IllegalArgumentException.class, () -> array.add(-1));
+        assertThrows(IllegalArgumentException.class, () -> array.add(1L << 60));
+        assertThrows(IndexOutOfBoundsException.class, () -> array.get(0));
+    }
+}
@@ -0,0 +1,104 @@
+package fi.iki.yak.compression.integer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for CompressedLongSet
+ *
+ * @author Michael Burman
+ */
+public class CompressedLongSetTest {
+
+    @Test
+    void containsRankAndSelect() throws Exception {
+        long[] values = randomSorted(5000, 1000);
+        CompressedLongSet set = CompressedLongSet.of(values);
+
+        assertEquals(values.length, set.size());
+        assertArrayEquals(values, set.toArray());
+        assertEquals(values[0], set.first());
+        assertEquals(values[values.length - 1], set.last());
+
+        for(int i = 0; i < values.length; i++) {
+            assertEquals(values[i], set.select(i));
+            assertEquals(i, set.rank(values[i]));
+            assertTrue(set.contains(values[i]));
+        }
+
+        for(long probe = values[0] - 10; probe < values[values.length - 1] + 10; probe += 7) {
+            int expected = Arrays.binarySearch(values, probe);
+            assertEquals(expected >= 0, set.contains(probe));
+            assertEquals(expected >= 0 ? expected : -expected - 1, set.rank(probe));
+        }
+    }
+
+    @Test
+    void denseAndSparseValues() throws Exception {
+        long[] dense = LongStream.range(-500, 1500).toArray();
+        CompressedLongSet set = CompressedLongSet.of(dense);
+        assertArrayEquals(dense, set.toArray());
+        assertTrue(set.sizeInBytes() < dense.length);
+
+        long[] sparse = {-(1L << 58), 0, 1L << 59, (1L << 60) - 2, (1L << 61) - 4};
+        assertArrayEquals(sparse, CompressedLongSet.of(sparse).toArray());
+    }
+
+    @Test
+    void duplicatesAndOrdering() throws Exception {
+        assertArrayEquals(new long[]{1, 2, 3}, CompressedLongSet.of(1, 1, 2, 2, 2, 3).toArray());
+        assertThrows(IllegalArgumentException.class, () -> CompressedLongSet.of(3, 2));
+        assertThrows(IllegalArgumentException.class, () -> CompressedLongSet.of(0, Long.MAX_VALUE));
+    }
+
+    @Test
+    void setAlgebra() throws Exception {
+        long[] left = randomSorted(3000, 100);
+        long[] right = randomSorted(2000, 150);
+        CompressedLongSet a = CompressedLongSet.of(left);
+        CompressedLongSet b = CompressedLongSet.of(right);
+
+        long[] union = LongStream.concat(Arrays.stream(left), Arrays.stream(right)).sorted().distinct().toArray();
+        long[] intersection = Arrays.stream(left).filter(v -> Arrays.binarySearch(right, v) >= 0).toArray();
+
+        assertArrayEquals(union, a.union(b).toArray());
+        assertArrayEquals(union, b.union(a).toArray());
+        assertArrayEquals(intersection, a.intersect(b).toArray());
+        assertArrayEquals(intersection, b.intersect(a).toArray());
+
+        CompressedLongSet small = CompressedLongSet.of(right[0], right[500], right[right.length - 1] + 1);
+        assertArrayEquals(new long[]{right[0], right[500]}, small.intersect(b).toArray());
+
+        assertTrue(a.intersect(CompressedLongSet.empty()).isEmpty());
+        assertEquals(a.size(), a.union(CompressedLongSet.empty()).size());
+    }
+
+    @Test
+    void emptySet() throws Exception {
+        CompressedLongSet set = CompressedLongSet.of();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(0));
+        assertEquals(0, set.rank(10));
+        assertFalse(set.iterator().hasNext());
+        assertThrows(IndexOutOfBoundsException.class, () -> set.select(0));
+    }
+
+    private long[] randomSorted(int amount, int maxGap) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long[] values = new long[amount];
+        values[0] = random.nextLong(-1000, 1000);
+        for(int i = 1; i < amount; i++) {
+            values[i] = values[i - 1] + 1 + random.nextInt(maxGap);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,168 @@
+package fi.iki.yak.compression.integer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for CompressionExecutor
+ *
+ * @author Michael Burman
+ */
+public class CompressionExecutorTest {
+
+    @Test
+    void compressesSmallAndLargeSeries() throws Exception {
+        for(boolean virtualThreads : new boolean[] { false, true }) {
+            CompressionExecutor executor = CompressionExecutor.builder(Codec.SIMPLE8_RLE)
+                    .parallelism(3)
+                    .maxPendingJobs(64)
+                    .batchValues(500)
+                    .virtualThreads(virtualThreads)
+                    .build();
+            assertEquals(virtualThreads && CompressionExecutor.virtualThreadsAvailable(),
+                    executor.usesVirtualThreads());
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            List<long[]> inputs = new ArrayList<>();
+            List<CompletableFuture<long[]>> futures = new ArrayList<>();
+            for(int i = 0; i < 2000; i++) {
+                long[] input = random.longs(i % 100 == 0 ? 5000 : random.nextInt(0, 50), 0, 1L << 20).toArray();
+                inputs.add(input);
+                futures.add(executor.submit(input));
+                assertTrue(executor.pendingJobs() <= 64);
+            }
+            for(int i = 0; i < inputs.size(); i++) {
+                long[] words = futures.get(i).get();
+                long[] decoded = new long[inputs.get(i).length + 240];
+                Codec.SIMPLE8_RLE.decompress(words, 0, words.length, decoded, 0);
+                assertArrayEquals(inputs.get(i), Arrays.copyOf(decoded, inputs.get(i).length));
+            }
+            executor.close();
+            assertEquals(0, executor.pendingJobs());
+        }
+    }
+
+    @Test
+    void closeCompletesBatchedJobs() throws Exception {
+        CompressionExecutor executor = CompressionExecutor.builder(Codec.SIMPLE8)
+                .parallelism(1)
+                .batchValues(1 << 20)
+                .build();
+        List<CompletableFuture<long[]>> futures = new ArrayList<>();
+        for(int i = 0; i < 1000; i++) {
+            futures.add(executor.submit(new long[] { i, i + 1, i + 2 }));
+        }
+        executor.close();
+        for(CompletableFuture<long[]> future : futures) {
+            assertTrue(future.isDone());
+        }
+        assertThrows(IllegalStateException.class, () -> executor.submit(new long[1]));
+    }
+
+    @Test
+    void failedJobCompletesExceptionally() throws Exception {
+        try(CompressionExecutor executor = CompressionExecutor.builder(Codec.SIMPLE8).build()) {
+            CompletableFuture<long[]> failed = executor.submit(new long[] { 1, 1L << 62 });
+            CompletableFuture<long[]> succeeded = executor.submit(new long[] { 1, 2 });
+            assertThrows(ExecutionException.class, failed::get);
+            assertEquals(1, succeeded.get().length);
+            assertThrows(IndexOutOfBoundsException.class, () -> executor.submit(new long[2], 1, 2));
+        }
+    }
+
+    @Test
+    void runsAtMostParallelismTasks() throws Exception {
+        for(boolean virtualThreads : new boolean[] { false, true }) {
+            AtomicInteger active = new AtomicInteger();
+            AtomicInteger peak = new AtomicInteger();
+            CompressionExecutor executor = CompressionExecutor.builder(Codec.SIMPLE8)
+                    .parallelism(2)
+                    .batchValues(100)
+                    .virtualThreads(virtualThreads)
+                    .compressor((context, codec, values, pos, amount) -> {
+                        peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+                        try {
+                            TimeUnit.MICROSECONDS.sleep(50);
+                        } catch(InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        active.decrementAndGet();
+                        return context.compressToArray(codec, values, pos, amount);
+                    })
+                    .build();
+
+            // Several producers submit at the same time
+            List<CompletableFuture<long[]>> futures = new ArrayList<>();
+            List<Thread> producers = new ArrayList<>();
+            for(int t = 0; t < 4; t++) {
+                Thread producer = new Thread(() -> {
+                    try {
+                        for(int i = 0; i < 500; i++) {
+                            CompletableFuture<long[]> future = executor.submit(new long[i % 2 == 0 ? 10 : 200]);
+                            synchronized(futures) {
+                                futures.add(future);
+                            }
+                        }
+                    } catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                producers.add(producer);
+                producer.start();
+            }
+            for(Thread producer : producers) {
+                producer.join();
+            }
+            executor.close();
+
+            assertEquals(2000, futures.size());
+            for(CompletableFuture<long[]> future : futures) {
+                assertTrue(future.isDone());
+            }
+            assertTrue(peak.get() <= 2, "Expected at most 2 concurrent tasks, was " + peak.get());
+        }
+    }
+
+    @Test
+    void errorInJobDoesNotBlockClose() throws Exception {
+        Error injected = new Error("Injected");
+        CompressionExecutor executor = CompressionExecutor.builder(Codec.SIMPLE8)
+                .parallelism(2)
+                .batchValues(50)
+                .compressor((context, codec, values, pos, amount) -> {
+                    if(amount == 7) {
+                        throw injected;
+                    }
+                    return context.compressToArray(codec, values, pos, amount);
+                })
+                .build();
+        List<CompletableFuture<long[]>> futures = new ArrayList<>();
+        for(int i = 0; i < 1000; i++) {
+            futures.add(executor.submit(new long[i == 500 ? 7 : 3]));
+        }
+        assertTimeoutPreemptively(Duration.ofSeconds(10), executor::close);
+        assertEquals(0, executor.pendingJobs());
+
+        ExecutionException failed = assertThrows(ExecutionException.class, futures.get(500)::get);
+        assertSame(injected, failed.getCause());
+        for(CompletableFuture<long[]> future : futures) {
+            assertTrue(future.isDone());
+        }
+    }
+}
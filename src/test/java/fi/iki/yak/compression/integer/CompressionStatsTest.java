@@ -0,0 +1,81 @@
+package fi.iki.yak.compression.integer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for CompressionStats
+ *
+ * @author Michael Burman
+ */
+public class CompressionStatsTest {
+
+    @Test
+    void selectorsAndWidths() throws Exception {
+        // 30 values of 2 bits fill one word, 7 values of 7 bits use the 8 bit selector
+        long[] input = new long[37];
+        Arrays.fill(input, 0, 30, 3);
+        Arrays.fill(input, 30, 37, 100);
+        long[] output = new long[input.length];
+
+        CompressionStats stats = new CompressionStats();
+        int words = Simple8.compress(input, 0, input.length, output, 0, stats);
+        assertEquals(2, words);
+        assertEquals(37, stats.values());
+        assertEquals(2, stats.words());
+        assertEquals(1, stats.selectorCount(3));
+        assertEquals(1, stats.selectorCount(9));
+        assertEquals(30, stats.bitWidthHistogram()[2]);
+        assertEquals(7, stats.bitWidthHistogram()[7]);
+        assertEquals(60 - 7 * 7, stats.wastedBits());
+        assertEquals(2 * 64.0 / 37, stats.bitsPerValue(), 1e-9);
+        assertEquals(0, stats.runs());
+    }
+
+    @Test
+    void runsAndMerge() throws Exception {
+        long[] input = new long[1000];
+        Arrays.fill(input, 0, 500, 7);
+        Arrays.fill(input, 500, 1000, 12345);
+        long[] output = new long[input.length];
+
+        CompressionStats stats = new CompressionStats();
+        assertEquals(2, Simple8RLE.compress(input, 0, input.length, output, 0, stats));
+        assertEquals(2, stats.runs());
+        assertEquals(1000, stats.runValues());
+        assertEquals(2, stats.runLengthHistogram()[8]); // 500 is in [256, 512)
+        assertEquals(2, stats.selectorCount(15));
+
+        CompressionStats other = new CompressionStats();
+        Arrays.fill(output, 0);
+        Simple8.compress(input, 0, 240, output, 0, other);
+        stats.merge(other);
+        assertEquals(1240, stats.values());
+        assertEquals(2, stats.runs());
+
+        stats.reset();
+        assertEquals(0, stats.values());
+        assertEquals(0, stats.selectorCount(15));
+    }
+
+    @Test
+    void statsDoNotChangeOutput() throws Exception {
+        long[] input = new long[5000];
+        Arrays.setAll(input, i -> i % 300 < 150 ? 1 : i * 31);
+        for(Codec codec : Codec.values()) {
+            long[] plain = new long[input.length];
+            long[] withStats = new long[input.length];
+            int words = codec.compress(input, 0, input.length, plain, 0);
+            CompressionStats stats = new CompressionStats();
+            int statsWords = codec == Codec.SIMPLE8
+                    ? Simple8.compress(input, 0, input.length, withStats, 0, stats)
+                    : Simple8RLE.compress(input, 0, input.length, withStats, 0, stats);
+            assertEquals(words, statsWords);
+            assertEquals(Arrays.toString(plain), Arrays.toString(withStats));
+            assertEquals(words, Arrays.stream(stats.selectorHistogram()).sum());
+        }
+    }
+}
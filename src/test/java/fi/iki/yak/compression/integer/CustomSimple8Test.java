@@ -0,0 +1,115 @@
+package fi.iki.yak.compression.integer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for CustomSimple8, SelectorTable and SelectorTableTrainer
+ *
+ * @author Michael Burman
+ */
+public class CustomSimple8Test {
+
+    @Test
+    void simple8TableMatchesSimple8() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long[] input = new long[10000];
+        for(int i = 0; i < input.length; i++) {
+            input[i] = i % 1000 < 300 ? 0 : random.nextLong(1L << random.nextInt(1, 61));
+        }
+        long[] simple8 = new long[input.length];
+        int simple8Words = Simple8.compress(input, 0, input.length, simple8, 0);
+
+        CustomSimple8 codec = new CustomSimple8(SelectorTable.SIMPLE8);
+        long[] custom = new long[input.length + 1];
+        int words = codec.compress(input, 0, input.length, custom, 0);
+        assertTrue(words - 1 <= simple8Words);
+
+        long[] decompressed = new long[input.length];
+        assertEquals(input.length, codec.decompress(custom, 0, words, decompressed, 0));
+        assertArrayEquals(input, decompressed);
+
+        // Same word layout, Simple8 words decode after a header
+        long[] withHeader = new long[simple8Words + 1];
+        withHeader[0] = SelectorTable.SIMPLE8.id();
+        System.arraycopy(simple8, 0, withHeader, 1, simple8Words);
+        Arrays.fill(decompressed, 0);
+        assertEquals(input.length, codec.decompress(withHeader, 0, withHeader.length, decompressed, 0));
+        assertArrayEquals(input, decompressed);
+    }
+
+    @Test
+    void trainedTableCompressesBetter() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long[] input = new long[21000];
+        for(int i = 0; i < input.length; i++) {
+            input[i] = random.nextLong(256, 512); // 9 bits, 6 per word in Simple8
+        }
+        SelectorTable table = SelectorTableTrainer.train(input, 0, 5000);
+        assertEquals(63, table.payloadBits());
+
+        long[] output = new long[input.length + 1];
+        CustomSimple8 codec = new CustomSimple8(table);
+        int words = codec.compress(input, 0, input.length, output, 0);
+        assertEquals(1 + input.length / 7, words);
+        assertTrue(words < Simple8.compress(input, 0, input.length, new long[input.length], 0));
+
+        long[] decompressed = new long[input.length];
+        CustomSimple8 decoder = CustomSimple8.forStream(output, 0);
+        assertEquals(table, decoder.table());
+        assertEquals(input.length, decoder.decompress(output, 0, words, decompressed, 0));
+        assertArrayEquals(input, decompressed);
+        assertEquals(7, decoder.valueCount(output[1]));
+        assertEquals(input[9], decoder.valueAt(output[2], 2));
+
+        // Values outside the sample still compress through the fallback selector
+        long[] outliers = { 1L << 59, 0, 3, 1000 };
+        words = codec.compress(outliers, 0, outliers.length, output, 0);
+        assertEquals(outliers.length, codec.decompress(output, 0, words, decompressed, 0));
+        assertArrayEquals(outliers, Arrays.copyOf(decompressed, outliers.length));
+    }
+
+    @Test
+    void trainerKeepsSimple8ForMixedData() throws Exception {
+        long[] input = new long[4800];
+        for(int i = 0; i < input.length; i++) {
+            input[i] = (i / 240) % 2 == 0 ? 0 : 1L << (i % 60);
+        }
+        SelectorTable table = SelectorTableTrainer.train(input);
+        long[] output = new long[input.length + 1];
+        int words = new CustomSimple8(table).compress(input, 0, input.length, output, 0);
+        assertTrue(words - 1 <= Simple8.compress(input, 0, input.length, new long[input.length], 0));
+    }
+
+    @Test
+    void tableIds() throws Exception {
+        SelectorTable table = SelectorTable.create(2, new int[] { 120 }, new int[] { 10, 3 });
+        assertEquals(4, table.selectors());
+        assertEquals(120, table.count(0));
+        assertEquals(0, table.bits(0));
+        assertEquals(3, table.bits(1));
+        assertEquals(20, table.count(1));
+        assertEquals(6, table.count(2));
+        assertEquals(62, table.bits(3));
+        assertEquals(table, SelectorTable.forId(table.id()));
+
+        assertEquals(16, SelectorTable.SIMPLE8.selectors());
+        assertThrows(IllegalArgumentException.class,
+                () -> SelectorTable.create(1, new int[0], new int[] { 3, 4 }));
+        assertThrows(IllegalArgumentException.class,
+                () -> SelectorTable.create(4, new int[] { 10, 10 }, new int[0]));
+        assertThrows(IllegalArgumentException.class, () -> SelectorTable.forId(-1L));
+
+        long[] words = new long[2];
+        new CustomSimple8(table).compress(new long[] { 5 }, 0, 1, words, 0);
+        assertThrows(IllegalArgumentException.class,
+                () -> new CustomSimple8(SelectorTable.SIMPLE8).decompress(words, 0, 2, new long[1], 0));
+    }
+}
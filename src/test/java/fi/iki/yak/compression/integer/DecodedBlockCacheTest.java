@@ -0,0 +1,160 @@
+package fi.iki.yak.compression.integer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for DecodedBlockCache
+ *
+ * @author Michael Burman
+ */
+public class DecodedBlockCacheTest {
+
+    @Test
+    void evictsLeastRecentlyUsed() throws Exception {
+        // Room for three blocks of 100 values in the single segment
+        DecodedBlockCache cache = new DecodedBlockCache(3 * (96 + 800), 1);
+        long[] first = new long[100];
+        cache.put(1, 0, first);
+        cache.put(1, 1, new long[100]);
+        cache.put(2, 0, new long[100]);
+        assertEquals(3, cache.size());
+        assertSame(first, cache.get(1, 0));
+
+        cache.put(2, 1, new long[100]);
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.evictions());
+        assertNotNull(cache.get(1, 0));
+        assertNull(cache.get(1, 1));
+        assertTrue(cache.sizeInBytes() <= cache.maxBytes());
+
+        // Too large for the budget, not cached
+        cache.put(3, 0, new long[1000]);
+        assertNull(cache.get(3, 0));
+
+        cache.invalidate(2);
+        assertEquals(1, cache.size());
+        assertEquals(96 + 800, cache.sizeInBytes());
+        assertEquals(2, cache.hits());
+        assertEquals(2, cache.misses());
+
+        cache.clear();
+        assertEquals(0, cache.sizeInBytes());
+    }
+
+    @Test
+    void zoneMapReadsFromCache() throws Exception {
+        long[] input = new long[10000];
+        Arrays.setAll(input, i -> i % 777);
+        DecodedBlockCache cache = new DecodedBlockCache(1 << 20);
+        ZoneMap cached = ZoneMap.encode(Codec.SIMPLE8_RLE, input).withCache(cache);
+
+        assertArrayEquals(input, cached.toArray());
+        assertEquals(cached.blockCount(), cache.misses());
+        assertArrayEquals(input, cached.toArray());
+        assertEquals(cached.blockCount(), cache.hits());
+        assertEquals(input[4321], cached.get(4321));
+        assertEquals(ZoneMap.encode(Codec.SIMPLE8_RLE, input).sum(13, 9000), cached.sum(13, 9000));
+    }
+
+    @Test
+    void zoneMapViewsShareStreamId() throws Exception {
+        long[] input = new long[3000];
+        Arrays.setAll(input, i -> i % 13);
+        ZoneMap zoneMap = ZoneMap.encode(Codec.SIMPLE8, input);
+        DecodedBlockCache cache = new DecodedBlockCache(1 << 20);
+        long streamId = DecodedBlockCache.newStreamId();
+
+        zoneMap.withCache(cache, streamId).toArray();
+        assertArrayEquals(input, zoneMap.withCache(cache, streamId).toArray());
+        assertEquals(zoneMap.blockCount(), cache.hits());
+
+        // Separately created views do not share the blocks
+        zoneMap.withCache(cache).toArray();
+        assertEquals(zoneMap.blockCount(), cache.hits());
+    }
+
+    @Test
+    void offHeapColumnReadsFromCache() throws Exception {
+        long[] input = new long[5000];
+        Arrays.setAll(input, i -> i * 3 % 1000);
+        DecodedBlockCache cache = new DecodedBlockCache(1 << 20);
+        long streamId = DecodedBlockCache.newStreamId();
+        try(OffHeapCompressedColumn column = OffHeapCompressedColumn.builder(Codec.SIMPLE8_RLE, 1000, 1 << 16)
+                .addAll(input, 0, input.length)
+                .build()) {
+            for(int i = 0; i < 2; i++) {
+                try(OffHeapCompressedColumn.Reader reader = column.reader()) {
+                    reader.useCache(cache, streamId);
+                    long[] decoded = new long[input.length + 1];
+                    for(int block = 0, pos = 1; block < reader.blocks(); block++) {
+                        pos += reader.decodeBlock(block, decoded, pos);
+                    }
+                    assertArrayEquals(input, Arrays.copyOfRange(decoded, 1, decoded.length));
+                }
+            }
+        }
+        assertEquals(5, cache.misses());
+        assertEquals(5, cache.hits());
+    }
+
+    @Test
+    void compressedLongArrayReadsFromCache() throws Exception {
+        long[] input = new long[1100];
+        Arrays.setAll(input, i -> i % 300);
+        CompressedLongArray array = new CompressedLongArray(Codec.SIMPLE8, 256);
+        array.addAll(input, 0, input.length);
+        DecodedBlockCache cache = new DecodedBlockCache(1 << 20);
+        array.useCache(cache, DecodedBlockCache.newStreamId());
+
+        for(int i = 0; i < 2; i++) {
+            PrimitiveIterator.OfLong iterator = array.iterator();
+            for(long value : input) {
+                assertEquals(value, iterator.nextLong());
+            }
+        }
+        // Only the sealed blocks are cached, the tail is read as it is
+        assertEquals(array.blocks(), cache.misses());
+        assertEquals(array.blocks(), cache.hits());
+    }
+
+    @Test
+    void fileReadersShareCache() throws Exception {
+        long[] input = new long[5000];
+        Arrays.setAll(input, i -> i / 7);
+        Path file = Files.createTempFile("block-cache", ".s8f");
+        try {
+            try(CompressedFileWriter writer = new CompressedFileWriter(file, Codec.SIMPLE8, 1000)) {
+                writer.write(input, 0, input.length);
+            }
+            DecodedBlockCache cache = new DecodedBlockCache(1 << 20);
+            long streamId = DecodedBlockCache.newStreamId();
+            for(int i = 0; i < 2; i++) {
+                try(CompressedFileReader reader = CompressedFileReader.open(file)) {
+                    reader.useCache(cache, streamId);
+                    long[] decoded = new long[input.length];
+                    for(int block = 0; block < reader.blockCount(); block++) {
+                        reader.readBlock(block, decoded, (int) reader.blockStart(block));
+                    }
+                    assertArrayEquals(input, decoded);
+                    assertEquals(input[3210], reader.get(3210));
+                }
+            }
+            assertEquals(5, cache.misses());
+            assertEquals(7, cache.hits());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package fi.iki.yak.compression.integer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for DecodingPublisher
+ *
+ * @author Michael Burman
+ */
+public class DecodingPublisherTest {
+
+    @Test
+    void batchesFollowDemand() throws Exception {
+        long[] input = ThreadLocalRandom.current().longs(10000, 0, 1 << 20).toArray();
+        Arrays.fill(input, 1000, 3000, 4);
+
+        for(Codec codec : Codec.values()) {
+            long[] compressed = new long[input.length];
+            int amount = codec.compress(input, 0, input.length, compressed, 0);
+
+            CollectingSubscriber subscriber = new CollectingSubscriber(input.length, 37);
+            new DecodingPublisher(codec, compressed, 0, amount, 100).subscribe(subscriber);
+
+            assertTrue(subscriber.completed);
+            assertEquals(null, subscriber.error);
+            assertTrue(subscriber.largestBatch <= 37);
+            assertArrayEquals(input, subscriber.values);
+        }
+    }
+
+    @Test
+    void slowSubscriberGetsOnlyRequestedValues() throws Exception {
+        long[] input = new long[1000];
+        Arrays.setAll(input, i -> i);
+        long[] compressed = new long[input.length];
+        int amount = Simple8.compress(input, compressed);
+
+        CollectingSubscriber subscriber = new CollectingSubscriber(input.length, 0);
+        new DecodingPublisher(Codec.SIMPLE8, compressed, 0, amount).subscribe(subscriber);
+        assertEquals(0, subscriber.received);
+
+        subscriber.subscription.request(10);
+        assertEquals(10, subscriber.received);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(input.length, subscriber.received);
+        assertTrue(subscriber.completed);
+        assertArrayEquals(input, subscriber.values);
+    }
+
+    @Test
+    void cancelAndInvalidRequest() throws Exception {
+        long[] input = new long[500];
+        Arrays.setAll(input, i -> i);
+        long[] compressed = new long[input.length];
+        int amount = Simple8.compress(input, compressed);
+
+        CollectingSubscriber cancelling = new CollectingSubscriber(input.length, 0);
+        new DecodingPublisher(Codec.SIMPLE8, compressed, 0, amount).subscribe(cancelling);
+        cancelling.subscription.request(5);
+        cancelling.subscription.cancel();
+        cancelling.subscription.request(5);
+        assertEquals(5, cancelling.received);
+        assertTrue(!cancelling.completed);
+
+        CollectingSubscriber invalid = new CollectingSubscriber(input.length, 0);
+        new DecodingPublisher(Codec.SIMPLE8, compressed, 0, amount).subscribe(invalid);
+        invalid.subscription.request(0);
+        assertTrue(invalid.error instanceof IllegalArgumentException);
+    }
+
+    @Test
+    void emptyInputCompletesImmediately() throws Exception {
+        CollectingSubscriber subscriber = new CollectingSubscriber(0, 0);
+        new DecodingPublisher(Codec.SIMPLE8_RLE, new long[0], 0, 0).subscribe(subscriber);
+        assertTrue(subscriber.completed);
+    }
+
+    /**
+     * Requests more values from inside onNext, which exercises the reentrancy handling
+     */
+    private static class CollectingSubscriber implements DecodingPublisher.Subscriber {
+        private final long[] values;
+        private final int step;
+        private DecodingPublisher.Subscription subscription;
+        private int received = 0;
+        private int largestBatch = 0;
+        private boolean completed = false;
+        private Throwable error;
+
+        private CollectingSubscriber(int expected, int step) {
+            this.values = new long[expected];
+            this.step = step;
+        }
+
+        @Override
+        public void onSubscribe(DecodingPublisher.Subscription subscription) {
+            this.subscription = subscription;
+            if(step > 0) {
+                subscription.request(step);
+            }
+        }
+
+        @Override
+        public void onNext(long[] batch, int length) {
+            System.arraycopy(batch, 0, values, received, length);
+            received += length;
+            largestBatch = Math.max(largestBatch, length);
+            if(step > 0) {
+                subscription.request(length);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package fi.iki.yak.compression.integer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for DictionaryColumn and LongIntHashMap
+ *
+ * @author Michael Burman
+ */
+public class DictionaryColumnTest {
+
+    private static final long[] HOSTS = { 1L << 62, -5, 7_000_000_000_000L, 42, Long.MIN_VALUE, 1L << 59 };
+
+    @Test
+    void roundTrip() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long[] input = new long[10000];
+        for(int i = 0; i < input.length; i++) {
+            // Skewed towards the first hosts
+            input[i] = HOSTS[Math.min(random.nextInt(HOSTS.length), random.nextInt(HOSTS.length))];
+        }
+        for(Codec codec : Codec.values()) {
+            for(DictionaryColumn.Order order : DictionaryColumn.Order.values()) {
+                DictionaryColumn column = DictionaryColumn.encode(codec, input, 0, input.length, order);
+                assertEquals(input.length, column.size());
+                assertEquals(HOSTS.length, column.dictionarySize());
+                assertArrayEquals(input, column.toArray());
+                assertTrue(column.sizeInBytes() < input.length, "Expected less than a byte per value");
+            }
+        }
+    }
+
+    @Test
+    void dictionaryOrder() throws Exception {
+        long[] input = { 9, 3, 9, 1, 9, 3 };
+        DictionaryColumn frequency = DictionaryColumn.encode(Codec.SIMPLE8, input);
+        assertArrayEquals(new long[] { 9, 3, 1 }, frequency.dictionary());
+        assertEquals(0, frequency.codeOf(9));
+        assertEquals(-1, frequency.codeOf(4));
+
+        DictionaryColumn sorted = DictionaryColumn.encode(Codec.SIMPLE8, input, 0, input.length,
+                DictionaryColumn.Order.SORTED);
+        assertArrayEquals(new long[] { 1, 3, 9 }, sorted.dictionary());
+    }
+
+    @Test
+    void predicates() throws Exception {
+        long[] input = new long[5000];
+        for(int i = 0; i < input.length; i++) {
+            input[i] = HOSTS[i % 7 % HOSTS.length];
+        }
+        DictionaryColumn column = DictionaryColumn.encode(Codec.SIMPLE8_RLE, input);
+        for(long host : HOSTS) {
+            int[] expected = IntStream.range(0, input.length).filter(i -> input[i] == host).toArray();
+            assertEquals(expected.length, column.countEqual(host));
+            assertArrayEquals(expected, column.positionsOf(host));
+        }
+        assertEquals(0, column.countEqual(3));
+        assertEquals(0, column.positionsOf(3).length);
+        assertEquals(Arrays.stream(input).filter(v -> v >= -5 && v <= 1L << 59).count(),
+                column.countBetween(-5, 1L << 59));
+        assertEquals(0, column.countBetween(43, 1000));
+    }
+
+    @Test
+    void hashMapGrows() throws Exception {
+        LongIntHashMap map = new LongIntHashMap(4);
+        for(int i = 0; i < 1000; i++) {
+            map.put(i * 0x1_0000_0000L, i);
+        }
+        assertEquals(1000, map.size());
+        for(int i = 0; i < 1000; i++) {
+            assertEquals(i, map.get(i * 0x1_0000_0000L));
+        }
+        assertEquals(-1, map.get(-1));
+        assertEquals(1, map.increment(-1));
+        assertEquals(2, map.increment(-1));
+        assertEquals(1001, map.size());
+    }
+}
@@ -0,0 +1,90 @@
+package fi.iki.yak.compression.integer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for DoubleXorCodec
+ *
+ * @author Michael Burman
+ */
+public class DoubleXorCodecTest {
+
+    @Test
+    void slowlyChangingGauge() throws Exception {
+        double[] input = new double[10000];
+        double value = 21.5;
+        for(int i = 0; i < input.length; i++) {
+            if(i % 60 == 0) {
+                value += 0.25;
+            }
+            input[i] = value;
+        }
+        long[] compressed = new long[DoubleXorCodec.maxCompressedLength(input.length)];
+        int words = DoubleXorCodec.compress(input, 0, input.length, compressed, 0);
+        assertEquals(words, DoubleXorCodec.compressedLength(compressed, 0));
+        assertTrue(words * 64.0 / input.length < 4, "Expected less than 4 bits per value, was "
+                + words * 64.0 / input.length);
+        assertRoundTrip(input, compressed, 0);
+    }
+
+    @Test
+    void randomAndSpecialValues() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double[] input = new double[5000];
+        for(int i = 0; i < input.length; i++) {
+            input[i] = random.nextDouble() * random.nextInt(1, 1000);
+        }
+        input[10] = Double.NaN;
+        input[11] = Double.longBitsToDouble(0x7FF8_0000_0000_1234L); // NaN with a payload
+        input[12] = -0.0;
+        input[13] = Double.NEGATIVE_INFINITY;
+        input[14] = Double.MIN_VALUE;
+        input[15] = -Double.MAX_VALUE;
+
+        long[] compressed = new long[DoubleXorCodec.maxCompressedLength(input.length) + 3];
+        int words = DoubleXorCodec.compress(input, 0, input.length, compressed, 3);
+        assertEquals(words, DoubleXorCodec.compressedLength(compressed, 3));
+        assertRoundTrip(input, compressed, 3);
+    }
+
+    @Test
+    void fullWidthXorsFitMaxLength() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double[] input = new double[1000];
+        for(int i = 0; i < input.length; i++) {
+            // The sign and the lowest bit flip on every value, so each XOR needs all 64 bits
+            long bits = random.nextLong() & ~(Long.MIN_VALUE | 1) | (i % 2 == 0 ? Long.MIN_VALUE | 1 : 0);
+            input[i] = Double.longBitsToDouble(bits);
+        }
+        long[] compressed = new long[DoubleXorCodec.maxCompressedLength(input.length)];
+        int words = DoubleXorCodec.compress(input, 0, input.length, compressed, 0);
+        assertTrue(words <= compressed.length);
+        assertRoundTrip(input, compressed, 0);
+    }
+
+    @Test
+    void emptyAndSingle() throws Exception {
+        long[] compressed = new long[DoubleXorCodec.maxCompressedLength(1)];
+        assertEquals(0, DoubleXorCodec.valueCount(compressed, 0));
+        DoubleXorCodec.compress(new double[0], 0, 0, compressed, 0);
+        assertEquals(0, DoubleXorCodec.decompress(compressed, 0, new double[0], 0));
+
+        assertRoundTrip(new double[] { -1.5 }, compressed, 0);
+    }
+
+    private static void assertRoundTrip(double[] input, long[] compressed, int pos) {
+        DoubleXorCodec.compress(input, 0, input.length, compressed, pos);
+        assertEquals(input.length, DoubleXorCodec.valueCount(compressed, pos));
+        double[] decompressed = new double[input.length];
+        assertEquals(input.length, DoubleXorCodec.decompress(compressed, pos, decompressed, 0));
+        for(int i = 0; i < input.length; i++) {
+            assertEquals(Double.doubleToRawLongBits(input[i]), Double.doubleToRawLongBits(decompressed[i]),
+                    "Value at " + i);
+        }
+    }
+}
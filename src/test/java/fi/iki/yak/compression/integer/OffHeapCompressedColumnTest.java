@@ -0,0 +1,88 @@
+package fi.iki.yak.compression.integer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import fi.iki.yak.compression.integer.benchmark.ZipfDistribution;
+
+/**
+ * Tests for OffHeapCompressedColumn
+ *
+ * @author Michael Burman
+ */
+public class OffHeapCompressedColumnTest {
+
+    @Test
+    void decodeFromDirectMemory() throws Exception {
+        for(Codec codec : Codec.values()) {
+            ZipfDistribution zipf = new ZipfDistribution(0.7, 5000);
+            long[] input = zipf.stream().limit(20000).asLongStream().toArray();
+
+            // Small segments to force blocks to be spread over several direct buffers
+            OffHeapCompressedColumn column = OffHeapCompressedColumn.builder(codec, 1000, 1 << 13)
+                    .addAll(input, 0, input.length)
+                    .build();
+
+            assertEquals(input.length, column.size());
+            assertEquals(20, column.blocks());
+            assertTrue(column.offHeapBytes() < input.length * Long.BYTES);
+
+            try(OffHeapCompressedColumn.Reader reader = column.reader()) {
+                long[] decoded = new long[input.length];
+                for(int block = 0, pos = 0; block < reader.blocks(); block++) {
+                    pos += reader.decodeBlock(block, decoded, pos);
+                }
+                assertArrayEquals(input, decoded);
+
+                for(int i = 0; i < input.length; i += 13) {
+                    assertEquals(input[i], reader.get(i));
+                }
+            }
+            column.close();
+            assertTrue(column.isReleased());
+        }
+    }
+
+    @Test
+    void partialLastBlock() throws Exception {
+        long[] input = new long[2500];
+        Arrays.fill(input, 7);
+        OffHeapCompressedColumn column = OffHeapCompressedColumn.builder(Codec.SIMPLE8_RLE)
+                .addAll(input, 0, input.length)
+                .build();
+        assertEquals(1, column.blocks());
+        assertEquals(2500, column.blockValueCount(0));
+
+        try(OffHeapCompressedColumn.Reader reader = column.reader()) {
+            long[] decoded = new long[input.length];
+            assertEquals(input.length, reader.decodeBlock(0, decoded, 0));
+            assertArrayEquals(input, decoded);
+        }
+        column.close();
+    }
+
+    @Test
+    void readersKeepMemoryAlive() throws Exception {
+        OffHeapCompressedColumn column = OffHeapCompressedColumn.builder(Codec.SIMPLE8)
+                .add(1).add(2).add(3)
+                .build();
+
+        OffHeapCompressedColumn.Reader reader = column.reader();
+        column.close();
+        column.close();
+        assertFalse(column.isReleased());
+        assertEquals(3, reader.get(2));
+
+        reader.close();
+        assertTrue(column.isReleased());
+        assertThrows(IllegalStateException.class, () -> reader.get(0));
+        assertThrows(IllegalStateException.class, column::reader);
+    }
+}
@@ -0,0 +1,80 @@
+package fi.iki.yak.compression.integer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for Simple8Context
+ *
+ * @author Michael Burman
+ */
+public class Simple8ContextTest {
+
+    @Test
+    void reusedBuffersProduceCorrectResults() throws Exception {
+        Simple8Context context = new Simple8Context();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        for(Codec codec : Codec.values()) {
+            for(int size : new int[]{1000, 10, 500, 3, 1000}) {
+                // Wide values first leave plenty of set bits behind for the next round
+                long[] input = random.longs(size, 0, size == 1000 ? 1L << 59 : 16).toArray();
+
+                int count = context.compress(codec, input, 0, input.length);
+                long[] decoded = context.decompress(codec, context.compressed(), 0, count, input.length);
+                assertArrayEquals(input, Arrays.copyOf(decoded, input.length));
+
+                long[] exact = context.compressToArray(codec, input, 0, input.length);
+                long[] expected = new long[input.length];
+                assertArrayEquals(Arrays.copyOf(expected, codec.compress(input, 0, input.length, expected, 0)),
+                        exact);
+            }
+        }
+    }
+
+    @Test
+    void buffersAreRetained() throws Exception {
+        Simple8Context context = Simple8Context.current();
+        assertSame(context, Simple8Context.current());
+        assertSame(context.values(100), context.values(50));
+        assertSame(context.words(100), context.words(100));
+        assertNotSame(context.values(Simple8Context.MAX_RETAINED_LENGTH + 1),
+                context.values(Simple8Context.MAX_RETAINED_LENGTH + 1));
+    }
+
+    @Test
+    void libraryCallsKeepCurrentBuffers() throws Exception {
+        long[] input = new long[5000];
+        Arrays.setAll(input, i -> i % 100);
+        Simple8Context context = Simple8Context.current();
+        int count = context.compress(Codec.SIMPLE8, input, 0, input.length);
+        long[] compressed = Arrays.copyOf(context.compressed(), count);
+        long[] decoded = context.decompress(Codec.SIMPLE8, compressed, 0, count, input.length);
+
+        ZoneMap.encode(Codec.SIMPLE8_RLE, input).toArray();
+        DictionaryColumn.encode(Codec.SIMPLE8, input).toArray();
+        long[] appended = Arrays.copyOf(compressed, count + 10);
+        Simple8.appendCompressed(appended, 0, count, new long[] { 1, 2, 3 }, 0, 3);
+
+        assertArrayEquals(input, Arrays.copyOf(decoded, input.length));
+        assertArrayEquals(compressed, Arrays.copyOf(context.compressed(), count));
+    }
+
+    @Test
+    void pool() throws Exception {
+        Simple8Context.Pool pool = new Simple8Context.Pool(1);
+        Simple8Context first = pool.acquire();
+        Simple8Context second = pool.acquire();
+        assertNotSame(first, second);
+
+        pool.release(first);
+        pool.release(second);
+        assertSame(first, pool.acquire());
+    }
+}
@@ -8,6 +8,8 @@ import java.util.concurrent.ThreadLocalRandom;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import fi.iki.yak.compression.integer.benchmark.ZipfDistribution;
+
 /**
  * Tests for Simple8 and Simple8RLE implementations
  *
@@ -177,6 +179,16 @@ public class Simple8EncodeTest {
         selector = (int) (output[1] >>> 60);
         assertEquals(15, selector);
         Arrays.fill(output, 0);
+
+        // Long runs of zeros should fill every word with 240 values
+        long[] zeros = new long[240 * 50 + 1];
+        zeros[zeros.length - 1] = 1;
+        long[] zerosOutput = new long[zeros.length];
+        assertEquals(51, Simple8.compress(zeros, zerosOutput));
+        for(int i = 0; i < 50; i++) {
+            assertEquals(0, (int) (zerosOutput[i] >>> 60));
+        }
+        verifyCompression(zeros, 0);
     }
 
     @Test
@@ -188,6 +200,44 @@ public class Simple8EncodeTest {
         Arrays.fill(input, 360, 720, 1);
 
         assertEquals(2, Simple8RLE.compress(input, output));
+
+        long[] uncompressed = new long[input.length];
+        Simple8RLE.decompress(output, 0, 2, uncompressed, 0);
+        Assertions.assertArrayEquals(input, uncompressed);
+
+        // Run values use all 32 bits of the value field
+        long[] wide = new long[100];
+        Arrays.fill(wide, 0xFFFFFFFFL);
+        Arrays.fill(output, 0);
+        assertEquals(1, Simple8RLE.compress(wide, output));
+        assertEquals(100, Simple8RLE.valueCount(output[0]));
+        assertEquals(0xFFFFFFFFL, Simple8RLE.valueAt(output[0], 99));
+
+        uncompressed = new long[wide.length];
+        Simple8RLE.decompress(output, 0, 1, uncompressed, 0);
+        Assertions.assertArrayEquals(wide, uncompressed);
+    }
+
+    @Test
+    void testSingleValueAccess() throws Exception {
+        ZipfDistribution zipf = new ZipfDistribution(0.5, 10000);
+        long[] input = zipf.stream().limit(1000).asLongStream().toArray();
+        long[] compressed = new long[input.length];
+
+        int amount = Simple8.compress(input, compressed);
+        for(int i = 0, pos = 0; i < amount; i++) {
+            for(int j = 0; j < Simple8.valueCount(compressed[i]); j++) {
+                assertEquals(input[pos++], Simple8.valueAt(compressed[i], j));
+            }
+        }
+
+        Arrays.fill(compressed, 0);
+        amount = Simple8RLE.compress(input, compressed);
+        for(int i = 0, pos = 0; i < amount; i++) {
+            for(int j = 0; j < Simple8RLE.valueCount(compressed[i]); j++) {
+                assertEquals(input[pos++], Simple8RLE.valueAt(compressed[i], j));
+            }
+        }
     }
 
     void verifyCompression(long[] input, int expectedAmount) {
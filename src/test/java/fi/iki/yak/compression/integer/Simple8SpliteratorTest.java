@@ -0,0 +1,98 @@
+package fi.iki.yak.compression.integer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for Simple8Spliterator and the stream methods
+ *
+ * @author Michael Burman
+ */
+public class Simple8SpliteratorTest {
+
+    @Test
+    void sequentialAndParallelStreams() throws Exception {
+        long[] input = ThreadLocalRandom.current().longs(200000, 0, 1L << 40)
+                .map(v -> v >>> Long.numberOfTrailingZeros(v | 1L << 40)) // Mixed bit widths
+                .toArray();
+        // Add runs to get RLE words with large value counts
+        Arrays.fill(input, 50000, 120000, 5);
+        long expectedSum = Arrays.stream(input).sum();
+
+        for(Codec codec : Codec.values()) {
+            long[] compressed = new long[input.length];
+            int amount = codec.compress(input, 0, input.length, compressed, 0);
+
+            LongStream stream = codec == Codec.SIMPLE8 ? Simple8.stream(compressed, 0, amount)
+                    : Simple8RLE.stream(compressed, 0, amount);
+            assertArrayEquals(input, stream.toArray());
+
+            Spliterator.OfLong spliterator = new Simple8Spliterator(codec, compressed, 0, amount);
+            assertEquals(input.length, spliterator.getExactSizeIfKnown());
+            assertEquals(expectedSum, StreamSupport.longStream(spliterator, true).sum());
+            assertArrayEquals(input,
+                    StreamSupport.longStream(new Simple8Spliterator(codec, compressed, 0, amount), true).toArray());
+        }
+    }
+
+    @Test
+    void splitsKeepExactSizes() throws Exception {
+        long[] input = new long[100000];
+        Arrays.setAll(input, i -> i % 1000);
+        long[] compressed = new long[input.length];
+        int amount = Simple8.compress(input, compressed);
+
+        Simple8Spliterator spliterator = new Simple8Spliterator(Codec.SIMPLE8, compressed, 0, amount);
+        spliterator.tryAdvance((long v) -> assertEquals(0, v));
+        spliterator.tryAdvance((long v) -> assertEquals(1, v));
+
+        Spliterator.OfLong prefix = spliterator.trySplit();
+        assertNotNull(prefix);
+        assertEquals(input.length - 2, prefix.estimateSize() + spliterator.estimateSize());
+
+        long[] decoded = new long[input.length - 2];
+        int pos = 0;
+        for(Spliterator.OfLong part : new Spliterator.OfLong[]{prefix, spliterator}) {
+            long[] values = StreamSupport.longStream(part, false).toArray();
+            System.arraycopy(values, 0, decoded, pos, values.length);
+            pos += values.length;
+        }
+        assertArrayEquals(Arrays.copyOfRange(input, 2, input.length), decoded);
+    }
+
+    @Test
+    void bulkReadAndSkip() throws Exception {
+        long[] input = new long[5000];
+        Arrays.setAll(input, i -> i < 2000 ? 9 : i);
+        long[] compressed = new long[input.length];
+        int amount = Simple8RLE.compress(input, compressed);
+
+        Simple8Spliterator spliterator = new Simple8Spliterator(Codec.SIMPLE8_RLE, compressed, 0, amount);
+        assertEquals(1500, spliterator.skip(1500));
+        long[] output = new long[input.length];
+        int read = 0;
+        for(int r; (r = spliterator.read(output, read, 7)) > 0; ) {
+            read += r;
+        }
+        assertEquals(3500, read);
+        assertArrayEquals(Arrays.copyOfRange(input, 1500, input.length), Arrays.copyOf(output, read));
+    }
+
+    @Test
+    void endOfStreamMarker() throws Exception {
+        long[] input = {1, 2, 3, 4, 5};
+        long[] compressed = new long[10];
+        int amount = Simple8RLE.compress(input, compressed);
+        // Trailing zero words are end-of-stream markers in Simple8RLE
+        assertArrayEquals(input, Simple8RLE.stream(compressed, 0, amount + 3).toArray());
+    }
+}
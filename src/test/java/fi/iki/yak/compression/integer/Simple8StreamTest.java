@@ -0,0 +1,116 @@
+package fi.iki.yak.compression.integer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import fi.iki.yak.compression.integer.benchmark.ZipfDistribution;
+
+/**
+ * Tests for Simple8OutputStream and Simple8InputStream
+ *
+ * @author Michael Burman
+ */
+public class Simple8StreamTest {
+
+    @Test
+    void streamRoundTrip() throws Exception {
+        ZipfDistribution zipf = new ZipfDistribution(0.6, 2000);
+        long[] input = zipf.stream().limit(25000).asLongStream().toArray();
+
+        for(Codec codec : Codec.values()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try(Simple8OutputStream out = new Simple8OutputStream(bytes, codec, 1000)) {
+                out.write(input, 0, 12345);
+                out.flush(); // Partial block in the middle of the stream
+                for(int i = 12345; i < input.length; i++) {
+                    out.writeLong(input[i]);
+                }
+            }
+            assertTrue(bytes.size() < input.length * Long.BYTES);
+
+            try(Simple8InputStream in = new Simple8InputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                assertEquals(codec, in.codec());
+                long[] decoded = new long[input.length];
+                int pos = 0;
+                for(int read; (read = in.read(decoded, pos, 777)) > 0; ) {
+                    pos += read;
+                }
+                assertEquals(input.length, pos);
+                assertArrayEquals(input, decoded);
+            }
+        }
+    }
+
+    @Test
+    void channelRoundTrip() throws Exception {
+        long[] input = new long[5000];
+        Arrays.setAll(input, i -> i % 100 < 50 ? 3 : i);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(Simple8OutputStream out = new Simple8OutputStream(Channels.newChannel(bytes), Codec.SIMPLE8_RLE)) {
+            out.write(input, 0, input.length);
+        }
+
+        try(Simple8InputStream in = new Simple8InputStream(
+                Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())))) {
+            for(long value : input) {
+                assertEquals(value, in.readLong());
+            }
+            assertFalse(in.hasNext());
+            assertThrows(EOFException.class, in::readLong);
+        }
+    }
+
+    @Test
+    void emptyAndCorruptedStreams() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new Simple8OutputStream(bytes, Codec.SIMPLE8).close();
+        try(Simple8InputStream in = new Simple8InputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertFalse(in.hasNext());
+            assertEquals(-1, in.read(new long[1], 0, 1));
+        }
+
+        byte[] garbage = new byte[64];
+        Simple8InputStream in = new Simple8InputStream(new ByteArrayInputStream(garbage));
+        assertThrows(IOException.class, in::hasNext);
+
+        bytes.reset();
+        try(Simple8OutputStream out = new Simple8OutputStream(bytes, Codec.SIMPLE8)) {
+            out.write(new long[100], 0, 100);
+            out.writeLong(1L << 40);
+        }
+        byte[] truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 3);
+        Simple8InputStream truncatedIn = new Simple8InputStream(new ByteArrayInputStream(truncated));
+        assertThrows(EOFException.class, truncatedIn::hasNext);
+    }
+
+    @Test
+    void tooLargeValueIsRejected() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Simple8OutputStream out = new Simple8OutputStream(bytes, Codec.SIMPLE8, 4);
+        out.write(new long[] { 1, 2, 3 }, 0, 3);
+        assertThrows(IllegalArgumentException.class, () -> out.writeLong(1L << 61));
+        assertThrows(IllegalArgumentException.class, () -> out.write(new long[] { 4, -1 }, 0, 2));
+        out.writeLong(5);
+        out.writeLong(6);
+        out.close();
+
+        try(Simple8InputStream in = new Simple8InputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            long[] decoded = new long[5];
+            assertEquals(5, in.read(decoded, 0, 5));
+            assertArrayEquals(new long[] { 1, 2, 3, 5, 6 }, decoded);
+        }
+    }
+}
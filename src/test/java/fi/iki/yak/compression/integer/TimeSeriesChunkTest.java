@@ -0,0 +1,132 @@
+package fi.iki.yak.compression.integer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for TimeSeriesChunk
+ *
+ * @author Michael Burman
+ */
+public class TimeSeriesChunkTest {
+
+    private static final long START = 1_514_764_800_000L;
+
+    @Test
+    void longValues() throws Exception {
+        long[] timestamps = timestamps(2000);
+        long[] values = new long[timestamps.length];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for(int i = 1; i < values.length; i++) {
+            values[i] = values[i - 1] + random.nextLong(-100, 100);
+        }
+        TimeSeriesChunk chunk = TimeSeriesChunk.encode(timestamps, values, 0, timestamps.length);
+        assertEquals(TimeSeriesChunk.ValueType.LONG, chunk.valueType());
+        assertEquals(START, chunk.firstTimestamp());
+        assertEquals(timestamps[timestamps.length - 1], chunk.lastTimestamp());
+        assertTrue(chunk.sizeInBytes() < timestamps.length * 2);
+
+        TimeSeriesChunk read = TimeSeriesChunk.wrap(chunk.words());
+        long[] decodedTimestamps = new long[read.size()];
+        long[] decodedValues = new long[read.size()];
+        read.decodeTimestamps(decodedTimestamps, 0);
+        read.decodeValues(decodedValues, 0);
+        assertArrayEquals(timestamps, decodedTimestamps);
+        assertArrayEquals(values, decodedValues);
+
+        assertRange(chunk, timestamps, values, timestamps[0], timestamps[10]);
+        assertRange(chunk, timestamps, values, timestamps[700] + 1, timestamps[1500]);
+        assertRange(chunk, timestamps, values, timestamps[1999], Long.MAX_VALUE);
+        assertRange(chunk, timestamps, values, Long.MIN_VALUE, timestamps[1]);
+        assertEquals(0, chunk.decodeRange(0, START, new long[1], new long[1], 0));
+        assertEquals(0, chunk.decodeRange(timestamps[1999] + 1, Long.MAX_VALUE, new long[1], new long[1], 0));
+    }
+
+    @Test
+    void doubleValues() throws Exception {
+        long[] timestamps = timestamps(1000);
+        double[] values = new double[timestamps.length];
+        for(int i = 0; i < values.length; i++) {
+            values[i] = 20.0 + (i / 50) * 0.5;
+        }
+        TimeSeriesChunk chunk = TimeSeriesChunk.encode(timestamps, values, 0, timestamps.length);
+        double[] decoded = new double[chunk.size()];
+        chunk.decodeValues(decoded, 0);
+        assertArrayEquals(values, decoded);
+
+        long[] rangeTimestamps = new long[chunk.size()];
+        double[] rangeValues = new double[chunk.size()];
+        int found = chunk.decodeRange(timestamps[120], timestamps[480], rangeTimestamps, rangeValues, 0);
+        assertEquals(360, found);
+        assertArrayEquals(Arrays.copyOfRange(timestamps, 120, 480), Arrays.copyOf(rangeTimestamps, found));
+        assertArrayEquals(Arrays.copyOfRange(values, 120, 480), Arrays.copyOf(rangeValues, found));
+
+        assertThrows(IllegalStateException.class, () -> chunk.decodeValues(new long[chunk.size()], 0));
+    }
+
+    @Test
+    void valuesFromContextScratch() throws Exception {
+        long[] timestamps = timestamps(3);
+        long[] values = { 1000, 1007, 1014 };
+        long[] words = Simple8Context.current().compressToArray(Codec.SIMPLE8, values, 0, values.length);
+        long[] scratch = Simple8Context.current().decompress(Codec.SIMPLE8, words, 0, words.length, values.length);
+
+        TimeSeriesChunk chunk = TimeSeriesChunk.encode(timestamps, scratch, 0, values.length);
+        long[] decoded = new long[chunk.size()];
+        chunk.decodeValues(decoded, 0);
+        assertArrayEquals(values, decoded);
+    }
+
+    @Test
+    void emptyAndInvalid() throws Exception {
+        TimeSeriesChunk empty = TimeSeriesChunk.encode(new long[0], new long[0], 0, 0);
+        assertEquals(0, empty.size());
+        assertEquals(0, empty.decodeRange(Long.MIN_VALUE, Long.MAX_VALUE, new long[0], new long[0], 0));
+        assertThrows(IllegalStateException.class, empty::firstTimestamp);
+
+        TimeSeriesChunk single = TimeSeriesChunk.encode(new long[] { 5 }, new long[] { -7 }, 0, 1);
+        long[] value = new long[1];
+        single.decodeValues(value, 0);
+        assertEquals(-7, value[0]);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> TimeSeriesChunk.encode(new long[] { 2, 1 }, new long[2], 0, 2));
+        assertThrows(IllegalArgumentException.class, () -> TimeSeriesChunk.wrap(new long[3]));
+    }
+
+    /**
+     * 10 second interval with occasional jitter
+     */
+    private static long[] timestamps(int size) {
+        long[] timestamps = new long[size];
+        timestamps[0] = START;
+        for(int i = 1; i < size; i++) {
+            timestamps[i] = timestamps[i - 1] + 10_000 + (i % 97 == 0 ? 3 : 0);
+        }
+        return timestamps;
+    }
+
+    private static void assertRange(TimeSeriesChunk chunk, long[] timestamps, long[] values, long from, long to) {
+        int start = 0;
+        while(start < timestamps.length && timestamps[start] < from) {
+            start++;
+        }
+        int end = start;
+        while(end < timestamps.length && timestamps[end] < to) {
+            end++;
+        }
+        long[] rangeTimestamps = new long[timestamps.length];
+        long[] rangeValues = new long[timestamps.length];
+        int found = chunk.decodeRange(from, to, rangeTimestamps, rangeValues, 0);
+        assertEquals(end - start, found);
+        assertArrayEquals(Arrays.copyOfRange(timestamps, start, end), Arrays.copyOf(rangeTimestamps, found));
+        assertArrayEquals(Arrays.copyOfRange(values, start, end), Arrays.copyOf(rangeValues, found));
+    }
+}
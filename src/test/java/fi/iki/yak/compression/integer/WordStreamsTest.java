@@ -0,0 +1,207 @@
+package fi.iki.yak.compression.integer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for concat, slice and appendCompressed of Simple8 and Simple8RLE
+ *
+ * @author Michael Burman
+ */
+public class WordStreamsTest {
+
+    @Test
+    void concat() throws Exception {
+        for(Codec codec : Codec.values()) {
+            long[] first = values(1003);
+            long[] second = values(517);
+            long[] firstWords = compress(codec, first);
+            long[] secondWords = compress(codec, second);
+
+            long[] output = new long[firstWords.length + secondWords.length];
+            int words = concat(codec, firstWords, secondWords, output);
+            assertArrayEquals(concat(first, second), decompress(codec, output, words, first.length + second.length));
+        }
+    }
+
+    @Test
+    void concatJoinsBoundaryWords() throws Exception {
+        // 3 small values in the last word of the first stream and 2 in the first word of the second
+        long[] first = { 1L << 40, 3, 2, 1 };
+        long[] second = { 1, 1 };
+        for(Codec codec : Codec.values()) {
+            long[] firstWords = compress(codec, first);
+            long[] secondWords = compress(codec, second);
+            assertEquals(2, firstWords.length);
+            assertEquals(1, secondWords.length);
+            long[] output = new long[3];
+            int words = concat(codec, firstWords, secondWords, output);
+            assertEquals(2, words);
+            assertArrayEquals(concat(first, second), decompress(codec, output, words, 6));
+        }
+    }
+
+    @Test
+    void concatRleRunsAndEndOfStream() throws Exception {
+        long[] first = new long[1000];
+        Arrays.fill(first, 7);
+        long[] second = new long[500];
+        Arrays.fill(second, 7);
+
+        // Over-sized array with end-of-stream words after the first stream
+        long[] firstWords = new long[5];
+        int firstCount = Simple8RLE.compress(first, 0, first.length, firstWords, 0);
+        assertEquals(1, firstCount);
+        long[] secondWords = compress(Codec.SIMPLE8_RLE, second);
+
+        int words = Simple8RLE.concat(firstWords, 0, firstWords.length, secondWords, 0, secondWords.length,
+                firstWords, 0);
+        assertEquals(1, words);
+        assertEquals(1500, Simple8RLE.valueCount(firstWords[0]));
+        assertArrayEquals(concat(first, second), decompress(Codec.SIMPLE8_RLE, firstWords, words, 1500));
+    }
+
+    @Test
+    void compactInPlace() throws Exception {
+        for(Codec codec : Codec.values()) {
+            long[] expected = new long[0];
+            long[] output = new long[10000];
+            int words = 0;
+            for(int i = 0; i < 20; i++) {
+                long[] chunk = values(ThreadLocalRandom.current().nextInt(1, 200));
+                long[] chunkWords = compress(codec, chunk);
+                words = codec == Codec.SIMPLE8
+                        ? Simple8.concat(output, 0, words, chunkWords, 0, chunkWords.length, output, 0)
+                        : Simple8RLE.concat(output, 0, words, chunkWords, 0, chunkWords.length, output, 0);
+                expected = concat(expected, chunk);
+            }
+            assertArrayEquals(expected, decompress(codec, output, words, expected.length));
+        }
+    }
+
+    @Test
+    void slice() throws Exception {
+        for(Codec codec : Codec.values()) {
+            long[] input = values(3000);
+            long[] words = compress(codec, input);
+            int[][] ranges = { { 0, 3000 }, { 0, 1 }, { 17, 2222 }, { 1500, 1500 }, { 2999, 3000 }, { 100, 2900 } };
+            for(int[] range : ranges) {
+                long[] output = new long[words.length + 16];
+                int count = codec == Codec.SIMPLE8
+                        ? Simple8.slice(words, 0, words.length, range[0], range[1], output, 0)
+                        : Simple8RLE.slice(words, 0, words.length, range[0], range[1], output, 0);
+                assertArrayEquals(Arrays.copyOfRange(input, range[0], range[1]),
+                        decompress(codec, output, count, range[1] - range[0]), codec + " " + range[0]);
+            }
+            assertThrows(IndexOutOfBoundsException.class, () -> WordStreams.slice(codec, words, 0, words.length, 10,
+                    3001, new long[words.length + 16], 0));
+        }
+    }
+
+    @Test
+    void sliceKeepsRunsAndZeroWords() throws Exception {
+        long[] input = new long[2000];
+        Arrays.fill(input, 1000, 2000, 5);
+        for(Codec codec : Codec.values()) {
+            long[] words = compress(codec, input);
+            long[] output = new long[words.length + 16];
+            int count = codec == Codec.SIMPLE8
+                    ? Simple8.slice(words, 0, words.length, 3, 1998, output, 0)
+                    : Simple8RLE.slice(words, 0, words.length, 3, 1998, output, 0);
+            assertArrayEquals(Arrays.copyOfRange(input, 3, 1998), decompress(codec, output, count, 1995));
+        }
+    }
+
+    @Test
+    void appendCompressed() throws Exception {
+        for(Codec codec : Codec.values()) {
+            long[] expected = new long[0];
+            long[] words = new long[20000];
+            int count = 0;
+            for(int i = 0; i < 200; i++) {
+                long[] chunk = values(ThreadLocalRandom.current().nextInt(0, 40));
+                count = append(codec, words, count, chunk);
+                expected = concat(expected, chunk);
+                assertArrayEquals(expected, decompress(codec, words, count, expected.length), codec + " " + i);
+            }
+            // Re-encoding the tail keeps the result close to compressing everything at once
+            assertTrue(count <= compress(codec, expected).length + 2);
+        }
+    }
+
+    @Test
+    void appendExtendsRleRun() throws Exception {
+        long[] run = new long[1000];
+        Arrays.fill(run, 9);
+        long[] words = new long[4];
+        int count = Simple8RLE.compress(run, 0, run.length, words, 0);
+        assertEquals(1, count);
+
+        count = Simple8RLE.appendCompressed(words, 0, count, new long[] { 9, 9, 9 }, 0, 3);
+        assertEquals(1, count);
+        assertEquals(1003, Simple8RLE.valueCount(words[0]));
+
+        count = Simple8RLE.appendCompressed(words, 0, count, new long[] { 9, 1, 2 }, 0, 3);
+        assertEquals(2, count);
+        assertEquals(1004, Simple8RLE.valueCount(words[0]));
+    }
+
+    @Test
+    void appendWithoutSpace() throws Exception {
+        long[] words = new long[1];
+        int count = Simple8.compress(new long[] { 1L << 50 }, 0, 1, words, 0);
+        long[] copy = words.clone();
+        assertThrows(IllegalArgumentException.class,
+                () -> Simple8.appendCompressed(words, 0, count, new long[] { 1L << 50 }, 0, 1));
+        assertArrayEquals(copy, words);
+    }
+
+    private static int append(Codec codec, long[] words, int count, long[] values) {
+        return codec == Codec.SIMPLE8
+                ? Simple8.appendCompressed(words, 0, count, values, 0, values.length)
+                : Simple8RLE.appendCompressed(words, 0, count, values, 0, values.length);
+    }
+
+    /**
+     * Values with varying bit widths and runs
+     */
+    private static long[] values(int size) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long[] values = new long[size];
+        for(int i = 0; i < size; i++) {
+            values[i] = (i / 100) % 3 == 0 ? 42 : random.nextLong(1L << random.nextInt(1, 40));
+        }
+        return values;
+    }
+
+    private static long[] compress(Codec codec, long[] values) {
+        long[] output = new long[values.length];
+        int words = codec.compress(values, 0, values.length, output, 0);
+        return Arrays.copyOf(output, words);
+    }
+
+    private static long[] decompress(Codec codec, long[] words, int amount, int valueCount) {
+        long[] values = new long[valueCount + 240];
+        codec.decompress(words, 0, amount, values, 0);
+        return Arrays.copyOf(values, valueCount);
+    }
+
+    private static int concat(Codec codec, long[] first, long[] second, long[] output) {
+        return codec == Codec.SIMPLE8
+                ? Simple8.concat(first, 0, first.length, second, 0, second.length, output, 0)
+                : Simple8RLE.concat(first, 0, first.length, second, 0, second.length, output, 0);
+    }
+
+    private static long[] concat(long[] first, long[] second) {
+        long[] values = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, values, first.length, second.length);
+        return values;
+    }
+}
@@ -0,0 +1,87 @@
+package fi.iki.yak.compression.integer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for ZoneMap
+ *
+ * @author Michael Burman
+ */
+public class ZoneMapTest {
+
+    @Test
+    void statisticsAndRoundTrip() throws Exception {
+        long[] input = ThreadLocalRandom.current().longs(10300, 0, 1L << 40).toArray();
+
+        for(Codec codec : Codec.values()) {
+            ZoneMap zoneMap = ZoneMap.encode(codec, input, 0, input.length, 1000);
+            assertEquals(11, zoneMap.blockCount());
+            assertEquals(300, zoneMap.blockValueCount(10));
+            assertArrayEquals(input, zoneMap.toArray());
+
+            for(int block = 0; block < zoneMap.blockCount(); block++) {
+                LongStream values = Arrays.stream(input, block * 1000, block * 1000 + zoneMap.blockValueCount(block));
+                long[] blockValues = values.toArray();
+                assertEquals(Arrays.stream(blockValues).min().getAsLong(), zoneMap.blockMin(block));
+                assertEquals(Arrays.stream(blockValues).max().getAsLong(), zoneMap.blockMax(block));
+                assertEquals(Arrays.stream(blockValues).sum(), zoneMap.blockSum(block));
+            }
+            assertEquals(input[5432], zoneMap.get(5432));
+        }
+    }
+
+    @Test
+    void rangeQueriesSkipBlocks() throws Exception {
+        // Monotone timestamps, only the blocks on the edges of a range need decoding
+        long[] input = new long[100000];
+        Arrays.setAll(input, i -> 1500000000000L + i * 10L + (i % 7));
+        ZoneMap zoneMap = ZoneMap.encode(Codec.SIMPLE8, input, 0, input.length, 1024);
+
+        long min = input[40000] + 3;
+        long max = input[42500];
+        int[] candidates = zoneMap.candidateBlocks(min, max);
+        assertTrue(candidates.length <= 4);
+        assertEquals(39, candidates[0]);
+
+        assertEquals(Arrays.stream(input).filter(v -> v >= min && v <= max).count(),
+                zoneMap.countBetween(min, max));
+        assertEquals(Arrays.stream(input).filter(v -> v >= min && v <= max).sum(), zoneMap.sumBetween(min, max));
+        assertEquals(0, zoneMap.countBetween(0, 1000));
+    }
+
+    @Test
+    void positionalAggregates() throws Exception {
+        long[] input = ThreadLocalRandom.current().longs(5000, 0, 100000).toArray();
+        ZoneMap zoneMap = ZoneMap.encode(Codec.SIMPLE8_RLE, input, 0, input.length, 256);
+
+        int[][] ranges = { { 0, 5000 }, { 100, 4000 }, { 256, 512 }, { 17, 18 }, { 3000, 3000 }, { 4999, 5000 } };
+        for(int[] range : ranges) {
+            assertEquals(Arrays.stream(input, range[0], range[1]).sum(), zoneMap.sum(range[0], range[1]));
+            if(range[0] < range[1]) {
+                assertEquals(Arrays.stream(input, range[0], range[1]).min().getAsLong(),
+                        zoneMap.min(range[0], range[1]));
+                assertEquals(Arrays.stream(input, range[0], range[1]).max().getAsLong(),
+                        zoneMap.max(range[0], range[1]));
+            }
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> zoneMap.sum(0, 5001));
+        assertThrows(IllegalArgumentException.class, () -> zoneMap.min(10, 10));
+    }
+
+    @Test
+    void emptyInput() throws Exception {
+        ZoneMap zoneMap = ZoneMap.encode(Codec.SIMPLE8, new long[0]);
+        assertEquals(0, zoneMap.blockCount());
+        assertEquals(0, zoneMap.countBetween(Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(0, zoneMap.sum(0, 0));
+    }
+}